@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Synthetic artifact generator for benchmarks
+ *
+ * <p>Generates pairs of artifacts of given size where revised one differs
+ * from original by given fraction of lines or bytes.
+ *
+ * @author ogondza
+ */
+public final class Artifacts {
+
+    /**
+     * Content of generated artifacts
+     *
+     * @author ogondza
+     */
+    public enum Content {
+        /** Lines repeated over and over, typical for logs and xml reports */
+        REPETITIVE,
+        /** Lines of random words */
+        RANDOM,
+        /** Random bytes */
+        BINARY
+    }
+
+    private static final String[] WORDS = {
+        "<testcase", "name=", "\"value\"", "time=", "0.001", "/>", "INFO", "at", "org.example.Class",
+        "foo", "bar", "baz", "return", "null;", "{", "}", "if", "(x)", "42", "-", "the", "result"
+    };
+
+    private Artifacts() {}
+
+    /**
+     * Generate original and revised artifact
+     *
+     * @param density Fraction of lines or bytes changed in revised artifact.
+     * @return Original and revised file.
+     */
+    public static File[] generate(
+            final File dir, final long size, final double density, final Content content
+    ) throws IOException {
+
+        final File original = new File(dir, "original");
+        final File revised = new File(dir, "revised");
+
+        final OutputStream lhs = new BufferedOutputStream(new FileOutputStream(original), 65536);
+        final OutputStream rhs = new BufferedOutputStream(new FileOutputStream(revised), 65536);
+        try {
+
+            final Random random = new Random(42);
+            final Random changes = new Random(4242);
+
+            long written = 0;
+            int line = 0;
+            while (written < size) {
+
+                final byte[] chunk = content == Content.BINARY
+                        ? getBytes(random)
+                        : getLine(random, content, line++)
+                ;
+
+                lhs.write(chunk);
+                written += chunk.length;
+
+                if (changes.nextDouble() < density) {
+
+                    // Modify, drop or duplicate the chunk
+                    switch (changes.nextInt(3)) {
+                    case 0:
+                        final byte[] modified = chunk.clone();
+                        modified[0] = (byte) (content == Content.BINARY ? ~modified[0] : 'X');
+                        rhs.write(modified);
+                        break;
+                    case 1:
+                        break;
+                    default:
+                        rhs.write(chunk);
+                        rhs.write(chunk);
+                    }
+                } else {
+
+                    rhs.write(chunk);
+                }
+            }
+        } finally {
+
+            lhs.close();
+            rhs.close();
+        }
+
+        return new File[] {original, revised};
+    }
+
+    private static byte[] getLine(final Random random, final Content content, final int line) {
+
+        final StringBuilder builder = new StringBuilder();
+        if (content == Content.REPETITIVE) {
+
+            builder.append("    <testcase name=\"test").append(line % 100).append("\" time=\"0.001\"/>");
+        } else {
+
+            final int words = 1 + random.nextInt(12);
+            for (int i = 0; i < words; i++) {
+
+                builder.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+        }
+
+        return builder.append('\n').toString().getBytes();
+    }
+
+    private static byte[] getBytes(final Random random) {
+
+        final byte[] bytes = new byte[64];
+        random.nextBytes(bytes);
+
+        return bytes;
+    }
+
+    /**
+     * Delete generated artifacts
+     */
+    public static void delete(final File dir) {
+
+        final File[] files = dir.listFiles();
+        if (files != null) {
+
+            for (final File file: files) {
+
+                file.delete();
+            }
+        }
+
+        dir.delete();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import hudson.FilePath;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Diff of synthetic artifacts
+ *
+ * <p>Sizes up to 1GB can be requested by <tt>-p size=1073741824</tt>.
+ *
+ * @author ogondza
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FilePathDiffBenchmark {
+
+    @Param({"1024", "1048576", "104857600"})
+    public long size;
+
+    @Param({"0.001", "0.05"})
+    public double density;
+
+    @Param({"REPETITIVE", "RANDOM", "BINARY"})
+    public Artifacts.Content content;
+
+    private File dir;
+    private File original;
+    private File revised;
+
+    @Setup
+    public void generate() throws IOException {
+
+        dir = File.createTempFile("artifact-diff-benchmark", "");
+        dir.delete();
+        dir.mkdirs();
+
+        final File[] files = Artifacts.generate(dir, size, density, content);
+        original = files[0];
+        revised = files[1];
+    }
+
+    @TearDown
+    public void delete() {
+
+        Artifacts.delete(dir);
+    }
+
+    @Benchmark
+    public List<String> getDiff() throws IOException {
+
+        return new FilePathDiff().getDiff(
+                FilePathDiff.MappedEntry.of(original, "1/artifact"),
+                FilePathDiff.MappedEntry.of(revised, "2/artifact")
+        );
+    }
+
+    @Benchmark
+    public List<String> getDiffRemote() throws IOException {
+
+        return new FilePathDiff().getDiff(
+                new FilePathDiff.Entry(new FilePath(original), "1/artifact"),
+                new FilePathDiff.Entry(new FilePath(revised), "2/artifact")
+        );
+    }
+
+    @Benchmark
+    public int getLines() throws IOException {
+
+        return new FilePathDiff.Entry(new FilePath(original), "1/artifact").getLines().size();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookup of builds having an artifact in job with long history
+ *
+ * <p>Index is populated the same way the build scan and the listener do.
+ *
+ * @author ogondza
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RelevantBuildsBenchmark {
+
+    @Param({"100", "3000"})
+    public int builds;
+
+    @Param({"400"})
+    public int artifacts;
+
+    private final ArtifactIndex index = new ArtifactIndex(null);
+    private List<String> paths;
+
+    @Setup
+    public void populate() throws IOException {
+
+        paths = getPaths(artifacts);
+        for (int build = 1; build <= builds; build++) {
+
+            index.add(build, paths);
+        }
+    }
+
+    @Benchmark
+    public int[] getBuilds() {
+
+        return index.getBuilds(paths.get(artifacts / 2));
+    }
+
+    @Benchmark
+    public int getWindow() {
+
+        return Response.BuildList.getWindowEnd(index.getBuilds(paths.get(artifacts / 2)), builds / 2);
+    }
+
+    @Benchmark
+    public ArtifactIndex scan() throws IOException {
+
+        final ArtifactIndex scanned = new ArtifactIndex(null);
+        for (int build = 1; build <= builds; build++) {
+
+            scanned.add(build, paths);
+        }
+
+        return scanned;
+    }
+
+    private static List<String> getPaths(final int count) {
+
+        final List<String> paths = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+
+            paths.add(String.format("module%d/target/artifact-%d.jar", i % 20, i));
+        }
+
+        return paths;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import difflib.Patch;
+
+/**
+ * Comparison of zip archive listings
+ *
+ * <p>Only central directories are read, entries are considered the same
+ * when their sizes and CRC-32 checksums match so nothing is inflated.
+ * Archives that differ in entry metadata only yield empty diff.
+ *
+ * <p>Individual entries can be compared using <tt>archive!/entry</tt> path.
+ *
+ * @author ogondza
+ */
+public class ArchiveDiff extends UnifiedDiff {
+
+    /**
+     * Separates archive path from entry name
+     */
+    public static final String SEPARATOR = "!/";
+
+    private final List<String> lines = new ArrayList<String>();
+
+    private int added = 0;
+    private int removed = 0;
+    private int changed = 0;
+
+    private ArchiveDiff(
+            final String originalPath, final String revisedPath,
+            final Map<String, ZipEntry> original, final Map<String, ZipEntry> revised
+    ) {
+
+        super(originalPath, revisedPath, Collections.<String>emptyList(), new Patch(), 0);
+
+        final Iterator<ZipEntry> originalEntries = original.values().iterator();
+        final Iterator<ZipEntry> revisedEntries = revised.values().iterator();
+
+        // Merge entries sorted by name
+        ZipEntry lhs = next(originalEntries);
+        ZipEntry rhs = next(revisedEntries);
+        while (lhs != null || rhs != null) {
+
+            final int order = lhs == null ? 1 : (rhs == null ? -1 : lhs.getName().compareTo(rhs.getName()));
+            if (order < 0) {
+
+                lines.add(format("-", lhs));
+                removed++;
+                lhs = next(originalEntries);
+            } else if (order > 0) {
+
+                lines.add(format("+", rhs));
+                added++;
+                rhs = next(revisedEntries);
+            } else {
+
+                if (lhs.getSize() != rhs.getSize() || lhs.getCrc() != rhs.getCrc()) {
+
+                    lines.add(format("-", lhs));
+                    lines.add(format("+", rhs));
+                    changed++;
+                }
+
+                lhs = next(originalEntries);
+                rhs = next(revisedEntries);
+            }
+        }
+
+        if (!lines.isEmpty()) {
+
+            lines.add(0, "+++ " + revisedPath);
+            lines.add(0, "--- " + originalPath);
+            lines.add(2, String.format(
+                    "Archive entries differ: %d added, %d removed, %d changed", added, removed, changed
+            ));
+        }
+    }
+
+    /**
+     * Compare listings of archives
+     *
+     * <p>Missing entry is considered an empty archive.
+     *
+     * @return <tt>null</tt> unless both entries are archives or missing.
+     */
+    public static ArchiveDiff compare(
+            final FilePathDiff.Entry original, final FilePathDiff.Entry revised
+    ) throws IOException {
+
+        final ZipFile originalArchive = original.openArchive();
+        try {
+
+            final ZipFile revisedArchive = revised.openArchive();
+            try {
+
+                if (originalArchive == null && revisedArchive == null) return null;
+                if (originalArchive == null && !original.isMissing()) return null;
+                if (revisedArchive == null && !revised.isMissing()) return null;
+
+                return new ArchiveDiff(
+                        original.getPath(), revised.getPath(),
+                        getEntries(originalArchive), getEntries(revisedArchive)
+                );
+            } finally {
+
+                if (revisedArchive != null) {
+
+                    revisedArchive.close();
+                }
+            }
+        } finally {
+
+            if (originalArchive != null) {
+
+                originalArchive.close();
+            }
+        }
+    }
+
+    /**
+     * Path of the archive in case the path points inside of one
+     */
+    public static String getArchive(final String path) {
+
+        final int separator = path.indexOf(SEPARATOR);
+
+        return separator < 0 ? path : path.substring(0, separator);
+    }
+
+    /**
+     * Name of the archive entry the path points to
+     *
+     * @return <tt>null</tt> unless the path points inside of an archive.
+     */
+    public static String getEntry(final String path) {
+
+        final int separator = path.indexOf(SEPARATOR);
+
+        return separator < 0 ? null : path.substring(separator + SEPARATOR.length());
+    }
+
+    private static Map<String, ZipEntry> getEntries(final ZipFile archive) {
+
+        final Map<String, ZipEntry> entries = new TreeMap<String, ZipEntry>();
+        if (archive == null) return entries;
+
+        final Enumeration<? extends ZipEntry> enumeration = archive.entries();
+        while (enumeration.hasMoreElements()) {
+
+            final ZipEntry entry = enumeration.nextElement();
+            if (!entry.isDirectory()) {
+
+                entries.put(entry.getName(), entry);
+            }
+        }
+
+        return entries;
+    }
+
+    private static ZipEntry next(final Iterator<ZipEntry> entries) {
+
+        return entries.hasNext() ? entries.next() : null;
+    }
+
+    private static String format(final String prefix, final ZipEntry entry) {
+
+        return String.format("%s%s (%d bytes, crc %08x)", prefix, entry.getName(), entry.getSize(), entry.getCrc());
+    }
+
+    public int getAdded() {
+
+        return added;
+    }
+
+    public int getRemoved() {
+
+        return removed;
+    }
+
+    public int getChanged() {
+
+        return changed;
+    }
+
+    @Override
+    public boolean isEmpty() {
+
+        return lines.isEmpty();
+    }
+
+    @Override
+    public Type getType() {
+
+        return Type.ARCHIVE;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+
+        return Collections.unmodifiableList(lines).iterator();
+    }
+}
@@ -49,7 +49,9 @@ import org.kohsuke.stapler.StaplerResponse;
  */
 public class ArtifactDifference implements Action {
 
-    private static final List<String> allowedCommands = Arrays.asList("plain", "html");
+    private static final List<String> allowedCommands = Arrays.asList(
+            "plain", "html", "json", "sidebyside", "rows", "words"
+    );
 
     private final Run<?, ?> lhsRun;
 
@@ -93,6 +95,30 @@ public class ArtifactDifference implements Action {
         return null;
     }
 
+    /**
+     * Builds having an artifact, see {@link Response.BuildList}
+     */
+    public void doBuilds(
+            final StaplerRequest req,
+            final StaplerResponse rsp
+    ) throws IOException, ServletException {
+
+        final DiffMetrics.Request metrics = DiffMetrics.start(
+                "builds", lhsRun.getParent().getFullName() + " " + req.getParameter("path")
+        );
+        try {
+
+            DiffMetrics.phase(DiffMetrics.Phase.BUILDS);
+            new Response.BuildList(this, req).generateResponse(req, rsp, this);
+        } catch (Response.Exception ex) {
+
+            ex.send(rsp);
+        } finally {
+
+            metrics.finish();
+        }
+    }
+
     public String getFilename(
             final Run<?, ?>.Artifact artifact, final String artifactDir
     ) throws IOException {
@@ -116,10 +142,14 @@ public class ArtifactDifference implements Action {
 
         if (req.getRestOfPath().isEmpty()) return new Response.ArtifactList(this);
 
-        return getCommand(req).equals("plain")
-                ? new DiffResponse.Plain(this, req, rsp)
-                : new DiffResponse.Html(this, req, rsp)
-        ;
+        final String command = getCommand(req);
+        if (command.equals("plain")) return new DiffResponse.Plain(this, req, rsp);
+        if (command.equals("json")) return new DiffResponse.Json(this, req, rsp);
+        if (command.equals("sidebyside")) return new DiffResponse.SideBySide(this, req, rsp);
+        if (command.equals("rows")) return new DiffResponse.Rows(this, req, rsp);
+        if (command.equals("words")) return new DiffResponse.Words(this, req, rsp);
+
+        return new DiffResponse.Html(this, req, rsp);
     }
 
     public void serve(
@@ -0,0 +1,368 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.TaskListener;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.listeners.RunListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds of a job that archived an artifact
+ *
+ * <p>Maps artifact path to sorted numbers of builds having an artifact on
+ * that path. The index is built by scanning the builds once and kept up to
+ * date as builds complete or get deleted. Persisted index that does not end
+ * with the last completed build of the job missed some updates and gets
+ * rebuilt.
+ *
+ * @author ogondza
+ */
+public class ArtifactIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(ArtifactIndex.class.getName());
+
+    private static final String FILENAME = "artifact-diff-index.xml";
+
+    private static final Map<Job<?, ?>, ArtifactIndex> loaded = new WeakHashMap<Job<?, ?>, ArtifactIndex>();
+
+    /**
+     * Indexes being loaded or built, guarded by {@link #loaded}
+     */
+    private static final Map<Job<?, ?>, FutureTask<ArtifactIndex>> loading = new HashMap<Job<?, ?>, FutureTask<ArtifactIndex>>();
+
+    private static final int[] NONE = new int[0];
+
+    private final Map<String, int[]> builds = new TreeMap<String, int[]>();
+
+    /**
+     * Number of the latest completed build reflected
+     */
+    private int lastBuild;
+
+    private transient XmlFile file;
+
+    /*package*/ ArtifactIndex(final XmlFile file) {
+
+        this.file = file;
+    }
+
+    /**
+     * Get index of a job, loading or building it if needed
+     *
+     * <p>Index is loaded and awaited outside of the lock so jobs do not wait
+     * for each other, concurrent callers for the same job wait for the same
+     * load.
+     */
+    public static ArtifactIndex of(final Job<?, ?> job) {
+
+        if (job == null) throw new IllegalArgumentException("Empty job provided");
+
+        FutureTask<ArtifactIndex> task;
+        boolean leader = false;
+        synchronized (loaded) {
+
+            final ArtifactIndex index = loaded.get(job);
+            if (index != null) return index;
+
+            task = loading.get(job);
+            if (task == null) {
+
+                task = new FutureTask<ArtifactIndex>(new Callable<ArtifactIndex>() {
+                    public ArtifactIndex call() {
+
+                        return load(job);
+                    }
+                });
+                loading.put(job, task);
+                leader = true;
+            }
+        }
+
+        // Wait for other caller's load without holding the lock
+        if (!leader) return get(task);
+
+        task.run();
+
+        ArtifactIndex index = null;
+        try {
+
+            return index = get(task);
+        } finally {
+
+            synchronized (loaded) {
+
+                loading.remove(job);
+                if (index != null) {
+
+                    loaded.put(job, index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait for the load regardless of interruption
+     */
+    private static ArtifactIndex get(final FutureTask<ArtifactIndex> task) {
+
+        boolean interrupted = false;
+        try {
+
+            while (true) {
+
+                try {
+
+                    return task.get();
+                } catch (InterruptedException ex) {
+
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+
+                    final Throwable cause = ex.getCause();
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+
+                    throw new IllegalStateException("Unable to load artifact index", cause);
+                }
+            }
+        } finally {
+
+            if (interrupted) {
+
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Number of the latest completed build the index reflects
+     */
+    public synchronized int getLastBuild() {
+
+        return lastBuild;
+    }
+
+    /**
+     * Numbers of builds having an artifact on path in ascending order
+     */
+    public synchronized int[] getBuilds(final String path) {
+
+        final int[] numbers = builds.get(path);
+
+        return numbers == null ? NONE : numbers.clone();
+    }
+
+    /*package*/ synchronized void add(final int number, final Collection<String> paths) throws IOException {
+
+        insert(number, paths);
+        lastBuild = Math.max(lastBuild, number);
+        save();
+    }
+
+    private void insert(final int number, final Collection<String> paths) {
+
+        for (final String path: paths) {
+
+            final int[] numbers = builds.get(path);
+            if (numbers == null) {
+
+                builds.put(path, new int[] {number});
+                continue;
+            }
+
+            final int position = Arrays.binarySearch(numbers, number);
+            if (position >= 0) continue;
+
+            final int insertAt = -position - 1;
+            final int[] updated = new int[numbers.length + 1];
+            System.arraycopy(numbers, 0, updated, 0, insertAt);
+            updated[insertAt] = number;
+            System.arraycopy(numbers, insertAt, updated, insertAt + 1, numbers.length - insertAt);
+
+            builds.put(path, updated);
+        }
+    }
+
+    /*package*/ synchronized void remove(final int number) throws IOException {
+
+        final Iterator<Map.Entry<String, int[]>> iterator = builds.entrySet().iterator();
+        while (iterator.hasNext()) {
+
+            final Map.Entry<String, int[]> entry = iterator.next();
+            final int[] numbers = entry.getValue();
+
+            final int position = Arrays.binarySearch(numbers, number);
+            if (position < 0) continue;
+
+            if (numbers.length == 1) {
+
+                iterator.remove();
+                continue;
+            }
+
+            final int[] updated = new int[numbers.length - 1];
+            System.arraycopy(numbers, 0, updated, 0, position);
+            System.arraycopy(numbers, position + 1, updated, position, updated.length - position);
+
+            entry.setValue(updated);
+        }
+
+        save();
+    }
+
+    private void save() throws IOException {
+
+        if (file != null) {
+
+            file.write(this);
+        }
+    }
+
+    private static ArtifactIndex load(final Job<?, ?> job) {
+
+        final Run<?, ?> last = job.getLastCompletedBuild();
+        final int lastBuild = last == null ? 0 : last.getNumber();
+
+        final XmlFile file = getConfigFile(job);
+        if (file.exists()) {
+
+            try {
+
+                final ArtifactIndex index = (ArtifactIndex) file.read();
+                index.file = file;
+
+                if (index.getLastBuild() == lastBuild) return index;
+
+                LOGGER.log(Level.INFO, "Rebuilding stale artifact index of {0}", job);
+            } catch (IOException ex) {
+
+                LOGGER.log(Level.WARNING, "Unable to read " + file, ex);
+            }
+        }
+
+        final ArtifactIndex index = new ArtifactIndex(file);
+        try {
+
+            index.scan(job, lastBuild);
+        } catch (IOException ex) {
+
+            LOGGER.log(Level.WARNING, "Unable to save artifact index of " + job, ex);
+        }
+
+        return index;
+    }
+
+    /**
+     * Build the index from builds recorded before it existed
+     */
+    private synchronized void scan(final Job<?, ?> job, final int lastBuild) throws IOException {
+
+        for (final Run<?, ?> run: job.getBuilds()) {
+
+            if (run.getHasArtifacts()) {
+
+                insert(run.getNumber(), getPaths(run));
+            }
+        }
+
+        this.lastBuild = lastBuild;
+        save();
+    }
+
+    private static List<String> getPaths(final Run<?, ?> run) {
+
+        final List<String> paths = new ArrayList<String>();
+        for (final Run<?, ?>.Artifact artifact: run.getArtifacts()) {
+
+            paths.add(artifact.relativePath);
+        }
+
+        return paths;
+    }
+
+    private static XmlFile getConfigFile(final Job<?, ?> job) {
+
+        return new XmlFile(new File(job.getRootDir(), FILENAME));
+    }
+
+    /**
+     * Update index as builds complete and get deleted
+     *
+     * @author ogondza
+     */
+    @Extension
+    public static final class Updater extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onCompleted(final Run<?, ?> run, final TaskListener listener) {
+
+            // Builds without artifacts are recorded too so the index is not considered stale
+            final List<String> paths = run.getHasArtifacts()
+                    ? getPaths(run)
+                    : Collections.<String>emptyList()
+            ;
+
+            try {
+
+                of(run.getParent()).add(run.getNumber(), paths);
+            } catch (IOException ex) {
+
+                LOGGER.log(Level.WARNING, "Unable to update artifact index of " + run.getParent(), ex);
+            }
+        }
+
+        @Override
+        public void onDeleted(final Run<?, ?> run) {
+
+            try {
+
+                of(run.getParent()).remove(run.getNumber());
+            } catch (IOException ex) {
+
+                LOGGER.log(Level.WARNING, "Unable to update artifact index of " + run.getParent(), ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.model.TaskListener;
+import hudson.model.Run;
+import hudson.model.listeners.RunListener;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Content fingerprints of build artifacts
+ *
+ * <p>Maps artifact path to its size and SHA-256 digest so two identical
+ * artifacts can be told apart from different ones without reading them.
+ * Recorded in background once the build completes, builds that predate the
+ * manifest get their fingerprints computed lazily on first use. Both are
+ * hashed on {@link DiffExecutor} within its budget.
+ *
+ * @author ogondza
+ */
+public class ArtifactManifest {
+
+    private static final Logger LOGGER = Logger.getLogger(ArtifactManifest.class.getName());
+
+    private static final String FILENAME = "artifact-diff-manifest.xml";
+
+    private static final Map<Run<?, ?>, ArtifactManifest> loaded = new WeakHashMap<Run<?, ?>, ArtifactManifest>();
+
+    private final Map<String, Fingerprint> fingerprints = new TreeMap<String, Fingerprint>();
+
+    // Not referring to the run so the manifest does not keep it reachable
+    private transient File rootDir;
+    private transient File artifactsDir;
+
+    private ArtifactManifest(final Run<?, ?> run) {
+
+        attach(run);
+    }
+
+    private void attach(final Run<?, ?> run) {
+
+        this.rootDir = run.getRootDir();
+        this.artifactsDir = run.getArtifactsDir();
+    }
+
+    /**
+     * Get manifest of a build, loading it from disk if needed
+     */
+    public static ArtifactManifest of(final Run<?, ?> run) {
+
+        if (run == null) throw new IllegalArgumentException("Empty run provided");
+
+        synchronized (loaded) {
+
+            ArtifactManifest manifest = loaded.get(run);
+            if (manifest == null) {
+
+                manifest = load(run);
+                loaded.put(run, manifest);
+            }
+
+            return manifest;
+        }
+    }
+
+    /**
+     * Determine whether both builds archived byte-identical artifact on path
+     *
+     * <p>Does not read any of the artifacts unless their fingerprints are yet
+     * to be computed and their sizes match.
+     */
+    public static boolean identical(
+            final Run<?, ?> lhsRun, final Run<?, ?> rhsRun, final String path
+    ) throws IOException {
+
+        // Artifacts of running builds can still change
+        if (lhsRun.isBuilding() || rhsRun.isBuilding()) return false;
+
+        final ArtifactManifest lhs = of(lhsRun);
+        final ArtifactManifest rhs = of(rhsRun);
+
+        final long size = lhs.getSize(path);
+        if (size < 0 || size != rhs.getSize(path)) return false;
+
+        final Fingerprint lhsPrint = lhs.get(path);
+
+        return lhsPrint != null && lhsPrint.equals(rhs.get(path));
+    }
+
+    /**
+     * Get fingerprint of an artifact
+     *
+     * @return null in case there is no such artifact or it can not be fingerprinted now.
+     */
+    public Fingerprint get(final String path) throws IOException {
+
+        synchronized (this) {
+
+            final Fingerprint fingerprint = fingerprints.get(path);
+            if (fingerprint != null) return fingerprint;
+        }
+
+        final File file = getFile(path);
+        if (!file.isFile()) return null;
+
+        final Fingerprint fingerprint;
+        try {
+
+            fingerprint = DiffExecutor.get().execute(Fingerprint.WEIGHT, new Callable<Fingerprint>() {
+
+                public Fingerprint call() throws IOException {
+
+                    return Fingerprint.of(file);
+                }
+            });
+        } catch (Response.Exception ex) {
+
+            LOGGER.fine("Fingerprint of " + file + " postponed: " + ex.getMessage());
+            return null;
+        }
+
+        synchronized (this) {
+
+            fingerprints.put(path, fingerprint);
+            save();
+        }
+
+        return fingerprint;
+    }
+
+    private synchronized long getSize(final String path) {
+
+        final Fingerprint fingerprint = fingerprints.get(path);
+        if (fingerprint != null) return fingerprint.getSize();
+
+        final File file = getFile(path);
+
+        return file.isFile() ? file.length() : -1;
+    }
+
+    private File getFile(final String path) {
+
+        return new File(artifactsDir, path);
+    }
+
+    /**
+     * Fingerprint artifacts in background, one after another
+     *
+     * @return false in case the executor turned it down.
+     */
+    private boolean schedule(final List<String> paths) {
+
+        return DiffExecutor.get().schedule(Fingerprint.WEIGHT, new Runnable() {
+
+            public void run() {
+
+                try {
+
+                    record(paths);
+                } catch (IOException ex) {
+
+                    LOGGER.log(Level.WARNING, "Unable to record artifact manifest in " + rootDir, ex);
+                }
+            }
+        });
+    }
+
+    private void record(final List<String> paths) throws IOException {
+
+        final Map<String, Fingerprint> recorded = new TreeMap<String, Fingerprint>();
+        for (final String path: paths) {
+
+            final File file = getFile(path);
+            if (!file.isFile()) continue;
+
+            recorded.put(path, Fingerprint.of(file));
+        }
+
+        synchronized (this) {
+
+            fingerprints.putAll(recorded);
+            save();
+        }
+    }
+
+    private void save() throws IOException {
+
+        getConfigFile(rootDir).write(this);
+    }
+
+    private static ArtifactManifest load(final Run<?, ?> run) {
+
+        final XmlFile file = getConfigFile(run.getRootDir());
+        if (file.exists()) {
+
+            try {
+
+                final ArtifactManifest manifest = (ArtifactManifest) file.read();
+                manifest.attach(run);
+
+                return manifest;
+            } catch (IOException ex) {
+
+                LOGGER.log(Level.WARNING, "Unable to read " + file, ex);
+            }
+        }
+
+        return new ArtifactManifest(run);
+    }
+
+    private static XmlFile getConfigFile(final File rootDir) {
+
+        return new XmlFile(new File(rootDir, FILENAME));
+    }
+
+    /**
+     * Size and digest of a single artifact
+     *
+     * @author ogondza
+     */
+    public static final class Fingerprint {
+
+        private static final int BUFFER = 8192;
+
+        /**
+         * Executor weight of fingerprinting, content is streamed so it does not depend on artifact size
+         */
+        /*package*/ static final long WEIGHT = BUFFER;
+
+        private final long size;
+        private final String sha256;
+
+        public Fingerprint(final long size, final String sha256) {
+
+            if (sha256 == null) throw new IllegalArgumentException("Empty digest");
+
+            this.size = size;
+            this.sha256 = sha256;
+        }
+
+        public static Fingerprint of(final File file) throws IOException {
+
+            final MessageDigest digest = getDigest();
+            final byte[] buffer = new byte[BUFFER];
+
+            final InputStream stream = new FileInputStream(file);
+            try {
+
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+
+                    digest.update(buffer, 0, read);
+                }
+            } finally {
+
+                stream.close();
+            }
+
+            return new Fingerprint(file.length(), Util.toHexString(digest.digest()));
+        }
+
+        private static MessageDigest getDigest() {
+
+            try {
+
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException ex) {
+
+                throw new AssertionError(ex);
+            }
+        }
+
+        public long getSize() {
+
+            return size;
+        }
+
+        public String getSha256() {
+
+            return sha256;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+
+            if (!(other instanceof Fingerprint)) return false;
+
+            final Fingerprint print = (Fingerprint) other;
+
+            return size == print.size && sha256.equals(print.sha256);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return sha256.hashCode();
+        }
+
+        @Override
+        public String toString() {
+
+            return String.format("%s (%d bytes)", sha256, size);
+        }
+    }
+
+    /**
+     * Record manifest once the build archived its artifacts
+     *
+     * <p>Artifacts are hashed in background not to hold the executor the build
+     * completes on. In case the pool is busy, they are fingerprinted on first use.
+     *
+     * @author ogondza
+     */
+    @Extension
+    public static final class Recorder extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onCompleted(final Run<?, ?> run, final TaskListener listener) {
+
+            if (!run.getHasArtifacts()) return;
+
+            final List<String> paths = new ArrayList<String>();
+            for (final Run<?, ?>.Artifact artifact: run.getArtifacts()) {
+
+                paths.add(artifact.relativePath);
+            }
+
+            if (!of(run).schedule(paths)) {
+
+                LOGGER.fine("Artifact manifest of " + run + " postponed, too many artifact diffs in progress or waiting");
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import difflib.Patch;
+
+/**
+ * Byte comparison of artifacts that are not text
+ *
+ * <p>Content is compared in a streaming fashion up to the first difference
+ * that is reported together with file sizes and, optionally, hex dump of the
+ * differing region.
+ *
+ * @author ogondza
+ */
+public class BinaryDiff extends UnifiedDiff {
+
+    /**
+     * Bytes inspected to tell binaries from text
+     */
+    /*package*/ static final int HEAD = 8 * 1024;
+
+    /**
+     * Bytes of both files dumped starting at the row of the first difference, 0 to disable
+     */
+    /*package*/ static final int HEX_WINDOW = Integer.getInteger(
+            BinaryDiff.class.getName() + ".hexWindow", 64
+    );
+
+    private static final int BUFFER = 64 * 1024;
+
+    private static final int ROW = 16;
+
+    private final String originalPath;
+    private final String revisedPath;
+    private final long originalSize;
+    private final long revisedSize;
+    /** Offset of the first difference, negative for identical files */
+    private final long offset;
+    private final byte[] originalWindow;
+    private final byte[] revisedWindow;
+
+    private BinaryDiff(
+            final String originalPath, final String revisedPath,
+            final long originalSize, final long revisedSize,
+            final long offset, final byte[] originalWindow, final byte[] revisedWindow
+    ) {
+
+        super(originalPath, revisedPath, Collections.<String>emptyList(), new Patch(), 0);
+
+        this.originalPath = originalPath;
+        this.revisedPath = revisedPath;
+        this.originalSize = originalSize;
+        this.revisedSize = revisedSize;
+        this.offset = offset;
+        this.originalWindow = originalWindow;
+        this.revisedWindow = revisedWindow;
+    }
+
+    /**
+     * Decide whether the stream content is not a text
+     *
+     * <p>Content is considered binary when its beginning contains NUL byte or
+     * a byte sequence that is not valid in given charset.
+     */
+    public static boolean isBinary(final InputStream stream, final Charset charset) throws IOException {
+
+        final byte[] head = new byte[HEAD];
+        final int length = read(stream, head);
+
+        for (int i = 0; i < length; i++) {
+
+            if (head[i] == 0) return true;
+        }
+
+        final CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+        ;
+
+        // Multibyte sequence cut at the end of the head is not an error unless the file ends there
+        final boolean complete = length < head.length;
+        final CoderResult result = decoder.decode(
+                ByteBuffer.wrap(head, 0, length), CharBuffer.allocate(length), complete
+        );
+
+        return result.isError();
+    }
+
+    /**
+     * Compare entries byte by byte stopping at the first difference
+     */
+    public static BinaryDiff compare(
+            final FilePathDiff.Entry original, final FilePathDiff.Entry revised
+    ) throws IOException {
+
+        final InputStream originalStream = original.open();
+        try {
+
+            final InputStream revisedStream = revised.open();
+            try {
+
+                return compare(
+                        original.getPath(), revised.getPath(),
+                        originalStream, original.getSize(),
+                        revisedStream, revised.getSize()
+                );
+            } finally {
+
+                if (revisedStream != null) {
+
+                    revisedStream.close();
+                }
+            }
+        } finally {
+
+            if (originalStream != null) {
+
+                originalStream.close();
+            }
+        }
+    }
+
+    /**
+     * @param original Original content, <tt>null</tt> if missing.
+     * @param revised Revised content, <tt>null</tt> if missing.
+     */
+    /*package*/ static BinaryDiff compare(
+            final String originalPath, final String revisedPath,
+            final InputStream original, final long originalSize,
+            final InputStream revised, final long revisedSize
+    ) throws IOException {
+
+        final byte[] originalBuffer = new byte[BUFFER];
+        final byte[] revisedBuffer = new byte[BUFFER];
+
+        // Chunks are read completely so they start at offsets aligned to hex dump rows
+        long position = 0;
+        while (true) {
+
+            final int originalLength = original == null ? 0 : read(original, originalBuffer);
+            final int revisedLength = revised == null ? 0 : read(revised, revisedBuffer);
+
+            final int common = Math.min(originalLength, revisedLength);
+            int i = 0;
+            while (i < common && originalBuffer[i] == revisedBuffer[i]) {
+
+                i++;
+            }
+
+            if (i < common || originalLength != revisedLength) {
+
+                final int windowStart = i - i % ROW;
+                return new BinaryDiff(
+                        originalPath, revisedPath, originalSize, revisedSize, position + i,
+                        getWindow(originalBuffer, windowStart, originalLength),
+                        getWindow(revisedBuffer, windowStart, revisedLength)
+                );
+            }
+
+            if (originalLength < BUFFER) {
+
+                return new BinaryDiff(
+                        originalPath, revisedPath, originalSize, revisedSize, -1, null, null
+                );
+            }
+
+            position += BUFFER;
+        }
+    }
+
+    private static byte[] getWindow(final byte[] buffer, final int start, final int length) {
+
+        final int end = Math.min(length, start + HEX_WINDOW);
+
+        final byte[] window = new byte[Math.max(0, end - start)];
+        System.arraycopy(buffer, start, window, 0, window.length);
+
+        return window;
+    }
+
+    /**
+     * Fill the buffer unless the stream ends
+     *
+     * @return Number of bytes read
+     */
+    private static int read(final InputStream stream, final byte[] buffer) throws IOException {
+
+        int length = 0;
+        while (length < buffer.length) {
+
+            final int read = stream.read(buffer, length, buffer.length - length);
+            if (read < 0) break;
+
+            length += read;
+        }
+
+        return length;
+    }
+
+    /**
+     * Offset of the first difference, negative for identical files
+     */
+    public long getOffset() {
+
+        return offset;
+    }
+
+    @Override
+    public boolean isEmpty() {
+
+        return offset < 0;
+    }
+
+    @Override
+    public Type getType() {
+
+        return Type.BINARY;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+
+        if (isEmpty()) return Collections.<String>emptyList().iterator();
+
+        final List<String> lines = new ArrayList<String>();
+        lines.add("--- " + originalPath);
+        lines.add("+++ " + revisedPath);
+        lines.add(String.format(
+                "Binary files differ at offset %d, sizes %d vs %d", offset, originalSize, revisedSize
+        ));
+
+        final long windowOffset = offset - offset % ROW;
+        dump(lines, "-", windowOffset, originalWindow);
+        dump(lines, "+", windowOffset, revisedWindow);
+
+        return lines.iterator();
+    }
+
+    /**
+     * Hex dump rows in the format of <tt>hexdump -C</tt>
+     */
+    private static void dump(
+            final List<String> lines, final String prefix, final long offset, final byte[] window
+    ) {
+
+        for (int row = 0; row < window.length; row += ROW) {
+
+            final StringBuilder hex = new StringBuilder();
+            final StringBuilder text = new StringBuilder();
+            for (int i = row; i < row + ROW; i++) {
+
+                if (i == row + ROW / 2) {
+
+                    hex.append(' ');
+                }
+
+                if (i < window.length) {
+
+                    final int b = window[i] & 0xff;
+                    hex.append(String.format(" %02x", b));
+                    text.append(b >= 0x20 && b < 0x7f ? (char) b : '.');
+                } else {
+
+                    hex.append("   ");
+                }
+            }
+
+            lines.add(String.format("%s%08x %s  |%s|", prefix, offset + row, hex, text));
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jenkins.model.Jenkins;
+
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+import difflib.ChangeDelta;
+import difflib.Chunk;
+import difflib.DeleteDelta;
+import difflib.InsertDelta;
+import difflib.Patch;
+
+/**
+ * Algorithm to compute differences between line sequences
+ *
+ * <p>Algorithm is chosen per request using <tt>algorithm</tt> parameter or
+ * according to artifact path. Path rules are configured by
+ * <tt>org.jenkinsci.plugins.artifactdiff.DiffAlgorithm.rules</tt> property
+ * as comma separated list of <tt>glob=algorithm</tt> pairs, first match wins.
+ *
+ * @author ogondza
+ */
+public abstract class DiffAlgorithm implements ExtensionPoint {
+
+    /*package*/ static final String DEFAULT = System.getProperty(
+            DiffAlgorithm.class.getName() + ".default", Myers.NAME
+    );
+
+    /*package*/ static final String RULES = System.getProperty(
+            DiffAlgorithm.class.getName() + ".rules", ""
+    );
+
+    /**
+     * Number of lines of both sequences to switch to fallback algorithm
+     */
+    /*package*/ static final long FALLBACK_THRESHOLD = Long.getLong(
+            DiffAlgorithm.class.getName() + ".fallbackThreshold", 200000
+    );
+
+    /**
+     * Identifier used in request parameter and path rules
+     */
+    public abstract String getName();
+
+    /**
+     * Compute differences
+     *
+     * <p>Lines are interned and reduced by {@link #getInput} before they are matched.
+     *
+     * @param original Lines to compare, equal elements represent equal lines.
+     * @param revised Lines to compare, equal elements represent equal lines.
+     */
+    public Patch diff(final List<?> original, final List<?> revised) {
+
+        final DiffInput input = getInput(original, revised);
+        final int[] reducedOriginal = input.getOriginal();
+        final int[] reducedRevised = input.getRevised();
+
+        final int[] match = new int[reducedOriginal.length];
+        Arrays.fill(match, -1);
+        if (reducedOriginal.length > 0 && reducedRevised.length > 0) {
+
+            match(reducedOriginal, reducedRevised, match);
+        }
+
+        return toPatch(original, revised, input.expand(match));
+    }
+
+    /**
+     * Prepare lines to be matched
+     */
+    protected DiffInput getInput(final List<?> original, final List<?> revised) {
+
+        return DiffInput.of(original, revised);
+    }
+
+    /**
+     * Match lines of interned sequences
+     *
+     * @param match Index of matching revised line to be filled for every original line, -1 for unmatched ones.
+     */
+    protected abstract void match(final int[] original, final int[] revised, final int[] match);
+
+    /**
+     * Cheaper algorithm to use for large inputs
+     */
+    public DiffAlgorithm getFallback() {
+
+        return this;
+    }
+
+    /**
+     * Algorithm to use for inputs of given size
+     */
+    public DiffAlgorithm forSize(final long lines) {
+
+        return lines > FALLBACK_THRESHOLD
+                ? getFallback()
+                : this
+        ;
+    }
+
+    public static ExtensionList<DiffAlgorithm> all() {
+
+        return Jenkins.getInstance().getExtensionList(DiffAlgorithm.class);
+    }
+
+    /**
+     * Get algorithm by name
+     *
+     * @return null if there is no such algorithm
+     */
+    public static DiffAlgorithm byName(final String name) {
+
+        for (final DiffAlgorithm algorithm: all()) {
+
+            if (algorithm.getName().equals(name)) return algorithm;
+        }
+
+        return null;
+    }
+
+    /**
+     * Name of algorithm configured for the path
+     */
+    public static String forPath(final String path) {
+
+        for (final Map.Entry<String, String> rule: parseRules(RULES).entrySet()) {
+
+            if (SelectorUtils.matchPath(rule.getKey(), path)) return rule.getValue();
+        }
+
+        return DEFAULT;
+    }
+
+    /*package*/ static Map<String, String> parseRules(final String rules) {
+
+        final Map<String, String> parsed = new LinkedHashMap<String, String>();
+        for (final String rule: rules.split(",")) {
+
+            final int separator = rule.lastIndexOf('=');
+            if (separator < 1) continue;
+
+            parsed.put(rule.substring(0, separator).trim(), rule.substring(separator + 1).trim());
+        }
+
+        return parsed;
+    }
+
+    /**
+     * Match range of tokens using Myers algorithm
+     *
+     * @param match Index of matching revised token for every original token, -1 for unmatched ones.
+     */
+    protected static void matchMyers(
+            final int[] original, final int originalStart, final int originalEnd,
+            final int[] revised, final int revisedStart, final int revisedEnd,
+            final int[] match
+    ) {
+
+        final MatchCallback callback = new MatchCallback(originalStart, revisedStart, match);
+        MyersDiff.diff(original, originalStart, originalEnd, revised, revisedStart, revisedEnd, callback);
+        callback.edit(originalEnd, originalEnd, revisedEnd, revisedEnd);
+    }
+
+    /**
+     * Record lines between edits as matching
+     *
+     * @author ogondza
+     */
+    private static final class MatchCallback implements MyersDiff.Callback {
+
+        private final int[] match;
+        private int i;
+        private int j;
+
+        private MatchCallback(final int i, final int j, final int[] match) {
+
+            this.i = i;
+            this.j = j;
+            this.match = match;
+        }
+
+        public void edit(final int originalStart, final int originalEnd, final int revisedStart, final int revisedEnd) {
+
+            while (i < originalStart) {
+
+                match[i++] = j++;
+            }
+
+            while (i < originalEnd) {
+
+                match[i++] = -1;
+            }
+
+            j = revisedEnd;
+        }
+    }
+
+    /**
+     * Create patch out of matched lines
+     *
+     * @param match Index of matching revised line for every original line, -1 for unmatched ones.
+     */
+    protected static Patch toPatch(final List<?> original, final List<?> revised, final int[] match) {
+
+        final Patch patch = new Patch();
+
+        int i = 0;
+        int j = 0;
+        while (i < original.size() || j < revised.size()) {
+
+            if (i < original.size() && match[i] == j) {
+
+                i++;
+                j++;
+                continue;
+            }
+
+            int originalEnd = i;
+            while (originalEnd < original.size() && match[originalEnd] < 0) {
+
+                originalEnd++;
+            }
+
+            final int revisedEnd = originalEnd < original.size()
+                    ? match[originalEnd]
+                    : revised.size()
+            ;
+
+            final Chunk originalChunk = new Chunk(i, new ArrayList<Object>(original.subList(i, originalEnd)));
+            final Chunk revisedChunk = new Chunk(j, new ArrayList<Object>(revised.subList(j, revisedEnd)));
+
+            if (originalChunk.size() == 0) {
+
+                patch.addDelta(new InsertDelta(originalChunk, revisedChunk));
+            } else if (revisedChunk.size() == 0) {
+
+                patch.addDelta(new DeleteDelta(originalChunk, revisedChunk));
+            } else {
+
+                patch.addDelta(new ChangeDelta(originalChunk, revisedChunk));
+            }
+
+            i = originalEnd;
+            j = revisedEnd;
+        }
+
+        return patch;
+    }
+
+    /**
+     * Myers algorithm yielding the same edits as java-diff-utils
+     *
+     * <p>Edits are identical to {@link difflib.DiffUtils#diff} as long as the
+     * trace fits into {@link MyersDiff#TRACE_LIMIT}, so lines are not reduced
+     * beyond common prefix. Larger inputs get an edit script of the same
+     * length that can align equal lines differently. Either way the result is
+     * materialized as java-diff-utils {@link Patch} for the formatters.
+     *
+     * @author ogondza
+     */
+    @Extension(ordinal = 100)
+    public static class Myers extends DiffAlgorithm {
+
+        public static final String NAME = "myers";
+
+        @Override
+        public String getName() {
+
+            return NAME;
+        }
+
+        @Override
+        protected void match(final int[] original, final int[] revised, final int[] match) {
+
+            matchMyers(original, 0, original.length, revised, 0, revised.length, match);
+        }
+
+        @Override
+        protected DiffInput getInput(final List<?> original, final List<?> revised) {
+
+            return DiffInput.interned(original, revised);
+        }
+
+        @Override
+        public DiffAlgorithm getFallback() {
+
+            return new HistogramDiffAlgorithm();
+        }
+    }
+}
@@ -0,0 +1,951 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Run;
+import hudson.model.listeners.RunListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+
+/**
+ * Cache of computed diffs
+ *
+ * <p>Diffs are recorded while being sent to the client and written through to
+ * disk under JENKINS_HOME, recently used small ones are kept in memory as well.
+ * Disk entries are gzip compressed so they can be sent to clients accepting
+ * gzip encoding as they are, the key and type of the diff precede them
+ * uncompressed.
+ * Both tiers are bounded by total size and evict least recently used entries
+ * first. Entries are dropped once any of the compared builds is deleted.
+ * Hunk index of recently used diffs is kept so a range of hunks can be read
+ * without scanning the diff, the same goes for side-by-side row alignment.
+ *
+ * @author ogondza
+ */
+public class DiffCache {
+
+    private static final Logger LOGGER = Logger.getLogger(DiffCache.class.getName());
+
+    private static final String ENCODING = "UTF-8";
+
+    /*package*/ static final long MEMORY_LIMIT = Long.getLong(
+            DiffCache.class.getName() + ".memoryLimit", 32L * 1024 * 1024
+    );
+
+    /*package*/ static final long DISK_LIMIT = Long.getLong(
+            DiffCache.class.getName() + ".diskLimit", 512L * 1024 * 1024
+    );
+
+    /*package*/ static final int INDEX_LIMIT = 1024;
+
+    /*package*/ static final int ALIGNMENT_LIMIT = 64;
+
+    private static DiffCache instance;
+
+    private final File dir;
+    private final long memoryLimit;
+    private final long diskLimit;
+
+    private final LinkedHashMap<Key, Body> memory = new LinkedHashMap<Key, Body>(16, 0.75f, true);
+    private final LinkedHashMap<Key, HunkIndex> indexes = new LinkedHashMap<Key, HunkIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, HunkIndex> eldest) {
+
+            return size() > INDEX_LIMIT;
+        }
+    };
+    private final LinkedHashMap<Key, RowAlignment> alignments = new LinkedHashMap<Key, RowAlignment>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, RowAlignment> eldest) {
+
+            return size() > ALIGNMENT_LIMIT;
+        }
+    };
+    private long memoryBytes = 0;
+    private long diskBytes = -1;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /*package*/ DiffCache(final File dir, final long memoryLimit, final long diskLimit) {
+
+        this.dir = dir;
+        this.memoryLimit = memoryLimit;
+        this.diskLimit = diskLimit;
+    }
+
+    public static synchronized DiffCache get() {
+
+        if (instance == null) {
+
+            instance = new DiffCache(
+                    new File(Jenkins.getInstance().getRootDir(), "artifact-diff-cache"),
+                    MEMORY_LIMIT,
+                    DISK_LIMIT
+            );
+        }
+
+        return instance;
+    }
+
+    public long getHits() {
+
+        return hits.get();
+    }
+
+    public long getMisses() {
+
+        return misses.get();
+    }
+
+    /**
+     * Lookup counters and memory held, published with {@link DiffMetrics}
+     */
+    public JSONObject toJSON() {
+
+        final JSONObject json = new JSONObject();
+        json.element("hits", getHits());
+        json.element("misses", getMisses());
+        synchronized (this) {
+
+            json.element("memoryBytes", memoryBytes);
+        }
+
+        return json;
+    }
+
+    /**
+     * Get cached diff
+     *
+     * @return null in case the diff is not cached. Caller is supposed to close the reader.
+     */
+    public Reader lookup(final Key key) {
+
+        final Body body = open(key);
+
+        (body == null ? misses : hits).incrementAndGet();
+
+        return body == null ? null : body.getReader();
+    }
+
+    /**
+     * Get hunk index of cached diff
+     *
+     * <p>Index is recorded together with the diff. Diffs read from disk after
+     * the index was evicted are indexed again.
+     *
+     * @return null in case the diff is not cached.
+     */
+    public HunkIndex getIndex(final Key key) {
+
+        synchronized (this) {
+
+            final HunkIndex index = indexes.get(key);
+            if (index != null) return index;
+        }
+
+        final Body body = open(key);
+        if (body == null) return null;
+
+        final Reader reader = body.getReader();
+        try {
+
+            try {
+
+                final HunkIndex index = HunkIndex.of(reader, body.type);
+                putIndex(key, index);
+
+                return index;
+            } finally {
+
+                reader.close();
+            }
+        } catch (IOException ex) {
+
+            LOGGER.log(Level.INFO, "Unable to index cached diff " + key, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Get side-by-side row alignment of cached diff
+     *
+     * @return null in case the diff is not cached.
+     */
+    public RowAlignment getAlignment(final Key key) {
+
+        synchronized (this) {
+
+            final RowAlignment alignment = alignments.get(key);
+            if (alignment != null) return alignment;
+        }
+
+        final Body body = open(key);
+        if (body == null) return null;
+
+        final Reader reader = body.getReader();
+        try {
+
+            try {
+
+                final RowAlignment alignment = RowAlignment.of(reader);
+                synchronized (this) {
+
+                    alignments.put(key, alignment);
+                }
+
+                return alignment;
+            } finally {
+
+                reader.close();
+            }
+        } catch (IOException ex) {
+
+            LOGGER.log(Level.INFO, "Unable to align cached diff " + key, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Remember side-by-side row alignment of diff computed outside of the cache
+     *
+     * <p>Alignment is kept even when the diff itself is not cached.
+     */
+    public synchronized void putAlignment(final Key key, final RowAlignment alignment) {
+
+        alignments.put(key, alignment);
+    }
+
+    private Body open(final Key key) {
+
+        Body body;
+        synchronized (this) {
+
+            body = memory.get(key);
+        }
+
+        return body != null
+                ? body
+                : openSpilled(key)
+        ;
+    }
+
+    /**
+     * Record diff while writing it to <tt>out</tt>
+     *
+     * <p>Diff is cached only after {@link Recorder#commit()}.
+     *
+     * @param type Kind of content the diff was computed from.
+     */
+    public Recorder record(final Key key, final UnifiedDiff.Type type, final Writer out) {
+
+        return new Recorder(key, type, out);
+    }
+
+    /**
+     * Drop all diffs involving the build
+     */
+    public void invalidate(final Run<?, ?> run) {
+
+        invalidate(run.getParent().getFullName(), run.getNumber());
+    }
+
+    /*package*/ void invalidate(final String job, final int number) {
+
+        synchronized (this) {
+
+            final Iterator<Map.Entry<Key, Body>> it = memory.entrySet().iterator();
+            while (it.hasNext()) {
+
+                final Map.Entry<Key, Body> entry = it.next();
+                if (entry.getKey().involves(job, number)) {
+
+                    memoryBytes -= weight(entry.getValue());
+                    it.remove();
+                }
+            }
+
+            final Iterator<Key> keys = indexes.keySet().iterator();
+            while (keys.hasNext()) {
+
+                if (keys.next().involves(job, number)) {
+
+                    keys.remove();
+                }
+            }
+
+            final Iterator<Key> aligned = alignments.keySet().iterator();
+            while (aligned.hasNext()) {
+
+                if (aligned.next().involves(job, number)) {
+
+                    aligned.remove();
+                }
+            }
+        }
+
+        final File[] files = getJobDir(job).listFiles();
+        if (files == null) return;
+
+        for (final File file: files) {
+
+            final String[] numbers = file.getName().split("-", 3);
+            if (numbers.length == 3 && (numbers[0].equals(String.valueOf(number)) || numbers[1].equals(String.valueOf(number)))) {
+
+                deleteSpilled(file);
+            }
+        }
+    }
+
+    /**
+     * Largest diff to be kept in memory
+     */
+    private long getMemoryEntryLimit() {
+
+        return memoryLimit / 4;
+    }
+
+    private synchronized void putMemory(final Key key, final Body body) {
+
+        final Body old = memory.put(key, body);
+        if (old != null) {
+
+            memoryBytes -= weight(old);
+        }
+
+        memoryBytes += weight(body);
+
+        final Iterator<Map.Entry<Key, Body>> it = memory.entrySet().iterator();
+        while (memoryBytes > memoryLimit && it.hasNext()) {
+
+            memoryBytes -= weight(it.next().getValue());
+            it.remove();
+        }
+    }
+
+    private synchronized void putIndex(final Key key, final HunkIndex index) {
+
+        indexes.put(key, index);
+    }
+
+    /**
+     * Send gzip compressed diff as it is stored on disk
+     *
+     * @return false in case the diff is not spilled to disk.
+     */
+    public boolean transferCompressed(final Key key, final WritableByteChannel target) throws IOException {
+
+        final File file = getFile(key);
+        if (!file.isFile()) return false;
+
+        final FileInputStream stream = new FileInputStream(file);
+        try {
+
+            final UnifiedDiff.Type type = readHeader(new BufferedInputStream(stream), key);
+            if (type == null) return false;
+
+            final long start = getHeader(key, type).length;
+
+            file.setLastModified(System.currentTimeMillis());
+
+            // Let the channel transfer the bytes without copying them through the heap when possible
+            final FileChannel channel = stream.getChannel();
+            final long size = channel.size();
+            long position = start;
+            while (position < size) {
+
+                position += channel.transferTo(position, size - position, target);
+            }
+
+            return true;
+        } finally {
+
+            stream.close();
+        }
+    }
+
+    /**
+     * Uncompressed key and type lines preceding the diff
+     */
+    private static byte[] getHeader(final Key key, final UnifiedDiff.Type type) throws IOException {
+
+        return (key.toString() + '\n' + type.name() + '\n').getBytes(ENCODING);
+    }
+
+    /**
+     * Read and verify the uncompressed header preceding the diff
+     *
+     * @return Type of the diff or null in case the file holds different key.
+     */
+    private static UnifiedDiff.Type readHeader(final InputStream stream, final Key key) throws IOException {
+
+        // Name collision
+        if (!key.toString().equals(readLine(stream))) return null;
+
+        final String type = readLine(stream);
+        for (final UnifiedDiff.Type candidate: UnifiedDiff.Type.values()) {
+
+            if (candidate.name().equals(type)) return candidate;
+        }
+
+        // Written before the type was recorded
+        return null;
+    }
+
+    /**
+     * @return null in case the stream ends before the line does.
+     */
+    private static String readLine(final InputStream stream) throws IOException {
+
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        int read;
+        while ((read = stream.read()) != '\n') {
+
+            // Name collision with a truncated file
+            if (read < 0) return null;
+
+            line.write(read);
+        }
+
+        return line.toString(ENCODING);
+    }
+
+    private Body openSpilled(final Key key) {
+
+        final File file = getFile(key);
+        if (!file.isFile()) return null;
+
+        try {
+
+            final Body spilled = openSpilled(file, key);
+            if (spilled == null) return null;
+
+            file.setLastModified(System.currentTimeMillis());
+
+            // Encoded length bounds the number of chars, stream diffs that can not fit without reading them
+            final HunkIndex index;
+            synchronized (this) {
+
+                index = indexes.get(key);
+            }
+
+            if (index != null && weight(index.getBytes()) > getMemoryEntryLimit()) return spilled;
+
+            // Compressed size does not tell whether the diff fits into memory tier unless indexed
+            final StringBuilder body = new StringBuilder();
+            final Reader reader = spilled.getReader();
+            try {
+
+                final char[] buffer = new char[8192];
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+
+                    body.append(buffer, 0, read);
+                    if (weight(body.length()) > getMemoryEntryLimit()) {
+
+                        return openSpilled(file, key);
+                    }
+                }
+            } finally {
+
+                reader.close();
+            }
+
+            final Body promoted = new Body(body.toString(), spilled.type);
+            putMemory(key, promoted);
+
+            return promoted;
+        } catch (IOException ex) {
+
+            LOGGER.log(Level.INFO, "Unable to read cached diff " + file, ex);
+            return null;
+        }
+    }
+
+    private static Body openSpilled(final File file, final Key key) throws IOException {
+
+        final InputStream stream = new BufferedInputStream(new FileInputStream(file));
+
+        boolean valid = false;
+        try {
+
+            final UnifiedDiff.Type type = readHeader(stream, key);
+            if (type == null) return null;
+
+            final Reader reader = new InputStreamReader(new GZIPInputStream(stream), ENCODING);
+            valid = true;
+
+            return new Body(reader, type);
+        } finally {
+
+            if (!valid) {
+
+                stream.close();
+            }
+        }
+    }
+
+    private synchronized void trimDisk(final long added) {
+
+        if (diskBytes < 0) {
+
+            diskBytes = 0;
+            for (final File file: getSpilledFiles()) {
+
+                diskBytes += file.length();
+            }
+        } else {
+
+            diskBytes += added;
+        }
+
+        if (diskBytes <= diskLimit) return;
+
+        final List<File> files = getSpilledFiles();
+        Collections.sort(files, new Comparator<File>() {
+            public int compare(final File lhs, final File rhs) {
+
+                final long diff = lhs.lastModified() - rhs.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+
+        for (final File file: files) {
+
+            if (diskBytes <= diskLimit) break;
+
+            deleteSpilled(file);
+        }
+    }
+
+    private void deleteSpilled(final File file) {
+
+        final long length = file.length();
+        if (!file.delete()) return;
+
+        synchronized (this) {
+
+            if (diskBytes >= 0) {
+
+                diskBytes -= length;
+            }
+        }
+    }
+
+    private List<File> getSpilledFiles() {
+
+        final List<File> files = new ArrayList<File>();
+
+        final File[] jobDirs = dir.listFiles();
+        if (jobDirs == null) return files;
+
+        for (final File jobDir: jobDirs) {
+
+            final File[] spilled = jobDir.listFiles();
+            if (spilled == null) continue;
+
+            for (final File file: spilled) {
+
+                if (!file.getName().endsWith(".tmp")) {
+
+                    files.add(file);
+                }
+            }
+        }
+
+        return files;
+    }
+
+    private File getJobDir(final String job) {
+
+        return new File(dir, digest(job));
+    }
+
+    private File getFile(final Key key) {
+
+        return new File(getJobDir(key.job), String.format(
+                "%d-%d-%s.gz", key.lhs, key.rhs, digest(key.toString())
+        ));
+    }
+
+    private static long weight(final Body body) {
+
+        return weight(body.text.length());
+    }
+
+    private static long weight(final long chars) {
+
+        return 64 + 2 * chars;
+    }
+
+    private static String digest(final String text) {
+
+        try {
+
+            return Util.toHexString(
+                    MessageDigest.getInstance("SHA-1").digest(text.getBytes(ENCODING))
+            );
+        } catch (NoSuchAlgorithmException ex) {
+
+            throw new AssertionError(ex);
+        } catch (UnsupportedEncodingException ex) {
+
+            throw new AssertionError(ex);
+        }
+    }
+
+    /**
+     * Writer passing the diff through while recording it
+     *
+     * <p>Diff is written to disk as it goes, the copy kept for memory tier is
+     * abandoned once it grows too large. Closing the recorder without commit
+     * discards the recorded diff.
+     *
+     * @author ogondza
+     */
+    public final class Recorder extends Writer {
+
+        private final Key key;
+        private final UnifiedDiff.Type type;
+        private final Writer out;
+
+        private final File file;
+        private final File tmp;
+        private Writer spill;
+        private StringBuilder body = new StringBuilder();
+        private final HunkIndex.Builder index;
+
+        private Recorder(final Key key, final UnifiedDiff.Type type, final Writer out) {
+
+            this.key = key;
+            this.type = type;
+            this.out = out;
+            this.index = new HunkIndex.Builder(type);
+            this.file = getFile(key);
+            this.tmp = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+
+            if (diskLimit > 0) {
+
+                try {
+
+                    tmp.getParentFile().mkdirs();
+
+                    // Header is kept uncompressed so the diff can be sent as it is
+                    final FileOutputStream stream = new FileOutputStream(tmp);
+                    stream.write(getHeader(key, type));
+                    spill = new BufferedWriter(
+                            new OutputStreamWriter(new GZIPOutputStream(stream, 8192), ENCODING)
+                    );
+                } catch (IOException ex) {
+
+                    abandonSpill(ex);
+                }
+            }
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) throws IOException {
+
+            out.write(cbuf, off, len);
+            index.append(cbuf, off, len);
+
+            if (body != null) {
+
+                body.append(cbuf, off, len);
+                if (weight(body.length()) > getMemoryEntryLimit()) {
+
+                    body = null;
+                }
+            }
+
+            if (spill != null) {
+
+                try {
+
+                    spill.write(cbuf, off, len);
+                } catch (IOException ex) {
+
+                    abandonSpill(ex);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+
+            out.flush();
+        }
+
+        /**
+         * Hunk index of the diff written so far
+         */
+        public HunkIndex getIndex() {
+
+            return index.build();
+        }
+
+        /**
+         * The diff was written completely
+         */
+        public void commit() {
+
+            putIndex(key, index.build());
+
+            if (spill != null) {
+
+                try {
+
+                    spill.close();
+                    spill = null;
+
+                    final long oldLength = file.length();
+                    if (!tmp.renameTo(file)) {
+
+                        file.delete();
+                        if (!tmp.renameTo(file)) throw new IOException("Unable to create " + file);
+                    }
+
+                    trimDisk(file.length() - oldLength);
+                } catch (IOException ex) {
+
+                    abandonSpill(ex);
+                }
+            }
+
+            if (body != null) {
+
+                putMemory(key, new Body(body.toString(), type));
+                body = null;
+            }
+        }
+
+        /**
+         * Discard uncommitted diff, the underlying writer is left open
+         */
+        @Override
+        public void close() {
+
+            body = null;
+            if (spill != null) {
+
+                abandonSpill(null);
+            }
+        }
+
+        private void abandonSpill(final IOException ex) {
+
+            if (ex != null) {
+
+                LOGGER.log(Level.INFO, "Unable to spill cached diff " + file, ex);
+            }
+
+            if (spill != null) {
+
+                try {
+
+                    spill.close();
+                } catch (IOException ignored) {
+                    // Already failing
+                }
+
+                spill = null;
+            }
+
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Diff text together with the type of content it was computed from
+     *
+     * <p>Memory tier holds the text, spilled diff is held as an open reader.
+     *
+     * @author ogondza
+     */
+    private static final class Body {
+
+        private final String text;
+        private final Reader reader;
+        private final UnifiedDiff.Type type;
+
+        private Body(final String text, final UnifiedDiff.Type type) {
+
+            this.text = text;
+            this.reader = null;
+            this.type = type;
+        }
+
+        private Body(final Reader reader, final UnifiedDiff.Type type) {
+
+            this.text = null;
+            this.reader = reader;
+            this.type = type;
+        }
+
+        /**
+         * Read the text, reader of spilled diff can be obtained only once
+         */
+        private Reader getReader() {
+
+            return text != null
+                    ? new StringReader(text)
+                    : reader
+            ;
+        }
+    }
+
+    /**
+     * Identification of a cached diff
+     *
+     * <p>Artifact sizes and modification times are part of the key so a diff
+     * of replaced artifact is never served.
+     *
+     * @author ogondza
+     */
+    public static final class Key {
+
+        private final String job;
+        private final int lhs;
+        private final int rhs;
+        private final String path;
+        private final String stamp;
+
+        public Key(
+                final String job, final int lhs, final int rhs, final String path, final String stamp
+        ) {
+
+            this.job = job;
+            this.lhs = lhs;
+            this.rhs = rhs;
+            this.path = path;
+            this.stamp = stamp;
+        }
+
+        /**
+         * @param variant Options the diff was computed with.
+         */
+        public static Key of(
+                final Run<?, ?> lhsRun, final Run<?, ?> rhsRun, final String path, final String variant
+        ) {
+
+            return new Key(
+                    lhsRun.getParent().getFullName(),
+                    lhsRun.getNumber(),
+                    rhsRun.getNumber(),
+                    path,
+                    stamp(lhsRun, path) + ":" + stamp(rhsRun, path) + ":" + variant
+            );
+        }
+
+        private static String stamp(final Run<?, ?> run, final String path) {
+
+            // Entries of an archive change with the archive
+            final File file = new File(run.getArtifactsDir(), ArchiveDiff.getArchive(path));
+
+            return file.isFile()
+                    ? file.length() + "@" + file.lastModified()
+                    : "-"
+            ;
+        }
+
+        private boolean involves(final String job, final int number) {
+
+            return this.job.equals(job) && (lhs == number || rhs == number);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+
+            if (!(other instanceof Key)) return false;
+
+            final Key key = (Key) other;
+
+            return lhs == key.lhs && rhs == key.rhs && job.equals(key.job)
+                    && path.equals(key.path) && stamp.equals(key.stamp)
+            ;
+        }
+
+        @Override
+        public int hashCode() {
+
+            return 31 * (31 * (31 * job.hashCode() + lhs) + rhs) + path.hashCode();
+        }
+
+        @Override
+        public String toString() {
+
+            return String.format("%s#%d#%d/%s %s", job, lhs, rhs, path, stamp);
+        }
+    }
+
+    /**
+     * Invalidate cached diffs of deleted builds
+     *
+     * @author ogondza
+     */
+    @Extension
+    public static final class Invalidator extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onDeleted(final Run<?, ?> run) {
+
+            get().invalidate(run);
+        }
+    }
+}
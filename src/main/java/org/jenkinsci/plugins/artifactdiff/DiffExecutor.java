@@ -0,0 +1,263 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool diffs are computed on
+ *
+ * <p>Each computation is admitted with a weight of its estimated input size.
+ * Computations are turned down with {@link Response.Exception.ServiceUnavailable}
+ * once the weight of admitted computations would exceed the budget or all
+ * threads are busy and the wait queue is full.
+ *
+ * @author ogondza
+ */
+public final class DiffExecutor {
+
+    private static final String PREFIX = DiffExecutor.class.getName();
+
+    /*package*/ static final int THREADS = Integer.getInteger(PREFIX + ".threads", 2);
+    /*package*/ static final int QUEUE = Integer.getInteger(PREFIX + ".queue", 8);
+    /** Estimated input bytes of all admitted computations */
+    /*package*/ static final long BUDGET = Long.getLong(PREFIX + ".budget", 512L << 20);
+    /** Seconds clients are asked to wait before retrying turned down request */
+    /*package*/ static final int RETRY_AFTER = Integer.getInteger(PREFIX + ".retryAfter", 30);
+
+    private static final DiffExecutor instance = new DiffExecutor(THREADS, QUEUE, BUDGET);
+
+    private final ThreadPoolExecutor executor;
+    private final long budget;
+    private long admitted = 0;
+
+    /*package*/ DiffExecutor(final int threads, final int queue, final long budget) {
+
+        this.budget = budget;
+        this.executor = new ThreadPoolExecutor(
+                threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queue),
+                new DaemonFactory()
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static DiffExecutor get() {
+
+        return instance;
+    }
+
+    /**
+     * Run the computation in the pool and wait for its result
+     *
+     * <p>Computation that has started holds its weight until it actually
+     * finishes, even if the caller gave up waiting for it.
+     *
+     * @param weight Estimated input size in bytes.
+     */
+    public <T> T execute(final long weight, final Callable<T> task) throws IOException, Response.Exception {
+
+        admit(weight);
+
+        // Set by whoever is responsible for releasing the weight, the task or the caller cancelling it before it started
+        final AtomicBoolean claimed = new AtomicBoolean();
+        boolean submitted = false;
+        final Future<T> future;
+        try {
+
+            future = submit(new Callable<T>() {
+
+                public T call() throws java.lang.Exception {
+
+                    if (!claimed.compareAndSet(false, true)) return null;
+
+                    try {
+
+                        return task.call();
+                    } finally {
+
+                        release(weight);
+                    }
+                }
+            });
+            submitted = true;
+        } finally {
+
+            if (!submitted) {
+
+                release(weight);
+            }
+        }
+
+        try {
+
+            return future.get();
+        } catch (InterruptedException ex) {
+
+            future.cancel(true);
+            if (claimed.compareAndSet(false, true)) {
+
+                release(weight);
+            }
+
+            throw (InterruptedIOException) new InterruptedIOException("Diff computation interrupted").initCause(ex);
+        } catch (ExecutionException ex) {
+
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+
+            throw new IOException("Diff computation failed", cause);
+        }
+    }
+
+    /**
+     * Run the task in the pool without waiting for it
+     *
+     * @param weight Estimated input size in bytes.
+     * @return false in case the task was turned down.
+     */
+    public boolean schedule(final long weight, final Runnable task) {
+
+        try {
+
+            admit(weight);
+        } catch (Response.Exception ex) {
+
+            return false;
+        }
+
+        try {
+
+            executor.execute(new Runnable() {
+
+                public void run() {
+
+                    try {
+
+                        task.run();
+                    } finally {
+
+                        release(weight);
+                    }
+                }
+            });
+
+            return true;
+        } catch (RejectedExecutionException ex) {
+
+            release(weight);
+            return false;
+        }
+    }
+
+    /*package*/ synchronized long getAdmitted() {
+
+        return admitted;
+    }
+
+    /*package*/ int getQueued() {
+
+        return executor.getQueue().size();
+    }
+
+    private synchronized void admit(final long weight) throws Response.Exception {
+
+        if (weight > budget) throw new Response.Exception.ServiceUnavailable(String.format(
+                "Artifacts too large to compare: %d bytes exceed the budget of %d", weight, budget
+        ), RETRY_AFTER);
+
+        if (admitted + weight > budget) throw new Response.Exception.ServiceUnavailable(
+                "Too many artifact diffs in progress", RETRY_AFTER
+        );
+
+        admitted += weight;
+    }
+
+    private synchronized void release(final long weight) {
+
+        admitted -= weight;
+    }
+
+    /**
+     * Submit the task handing over the measurement of current request
+     */
+    private <T> Future<T> submit(final Callable<T> task) throws Response.Exception {
+
+        final DiffMetrics.Request metrics = DiffMetrics.suspend();
+        try {
+
+            return executor.submit(new Callable<T>() {
+
+                public T call() throws java.lang.Exception {
+
+                    DiffMetrics.resume(metrics);
+                    try {
+
+                        return task.call();
+                    } finally {
+
+                        DiffMetrics.suspend();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+
+            throw new Response.Exception.ServiceUnavailable("Too many artifact diffs waiting", RETRY_AFTER);
+        } finally {
+
+            DiffMetrics.resume(metrics);
+        }
+    }
+
+    /**
+     * Name pool threads and do not block JVM shutdown
+     *
+     * @author ogondza
+     */
+    private static final class DaemonFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(final Runnable runnable) {
+
+            final Thread thread = new Thread(runnable, "Artifact diff computation #" + count.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lines to compare reduced to the part worth running diff algorithm on
+ *
+ * <p>Lines are interned to numbers, common prefix and suffix are stripped and
+ * lines that do not occur on the other side at all are left out as they can
+ * never be matched. Resulting match is translated back to the original
+ * positions.
+ *
+ * @author ogondza
+ */
+public final class DiffInput {
+
+    private final int originalSize;
+    private final int revisedSize;
+    private final int prefix;
+    private final int suffix;
+
+    private final int[] original;
+    private final int[] revised;
+    /** Position of reduced line in the full sequence */
+    private final int[] originalIndex;
+    private final int[] revisedIndex;
+
+    /*package*/ DiffInput(final int[] original, final int[] revised, final int distinct) {
+
+        this(original, revised, distinct, true);
+    }
+
+    /**
+     * @param reduce Strip common suffix and prune lines missing on the other side.
+     */
+    private DiffInput(final int[] original, final int[] revised, final int distinct, final boolean reduce) {
+
+        this.originalSize = original.length;
+        this.revisedSize = revised.length;
+
+        int prefix = 0;
+        while (prefix < original.length && prefix < revised.length && original[prefix] == revised[prefix]) {
+
+            prefix++;
+        }
+
+        int suffix = 0;
+        while (reduce && suffix < original.length - prefix && suffix < revised.length - prefix
+                && original[original.length - 1 - suffix] == revised[revised.length - 1 - suffix]
+        ) {
+
+            suffix++;
+        }
+
+        this.prefix = prefix;
+        this.suffix = suffix;
+
+        final boolean[] inOriginal = new boolean[distinct];
+        for (int i = prefix; i < original.length - suffix; i++) {
+
+            inOriginal[original[i]] = true;
+        }
+
+        final boolean[] inRevised = new boolean[distinct];
+        for (int j = prefix; j < revised.length - suffix; j++) {
+
+            inRevised[revised[j]] = true;
+        }
+
+        if (!reduce) {
+
+            Arrays.fill(inOriginal, true);
+            Arrays.fill(inRevised, true);
+        }
+
+        this.originalIndex = prune(original, prefix, suffix, inRevised);
+        this.revisedIndex = prune(revised, prefix, suffix, inOriginal);
+        this.original = select(original, originalIndex);
+        this.revised = select(revised, revisedIndex);
+    }
+
+    public static DiffInput of(final List<?> original, final List<?> revised) {
+
+        final LineInterner interner = new LineInterner(original.size() + revised.size());
+        final int[] originalTokens = interner.intern(original);
+        final int[] revisedTokens = interner.intern(revised);
+
+        return new DiffInput(originalTokens, revisedTokens, interner.size());
+    }
+
+    /**
+     * Interned lines with only common prefix stripped
+     *
+     * <p>Stripping suffix or pruning lines can change which of equally short
+     * edit scripts Myers algorithm finds.
+     */
+    public static DiffInput interned(final List<?> original, final List<?> revised) {
+
+        final LineInterner interner = new LineInterner(original.size() + revised.size());
+        final int[] originalTokens = interner.intern(original);
+        final int[] revisedTokens = interner.intern(revised);
+
+        return new DiffInput(originalTokens, revisedTokens, interner.size(), false);
+    }
+
+    /**
+     * Positions of lines present on the other side
+     */
+    private static int[] prune(
+            final int[] tokens, final int prefix, final int suffix, final boolean[] onOtherSide
+    ) {
+
+        final int[] index = new int[tokens.length - prefix - suffix];
+        int size = 0;
+        for (int i = prefix; i < tokens.length - suffix; i++) {
+
+            if (onOtherSide[tokens[i]]) {
+
+                index[size++] = i;
+            }
+        }
+
+        return Arrays.copyOf(index, size);
+    }
+
+    private static int[] select(final int[] tokens, final int[] index) {
+
+        final int[] selected = new int[index.length];
+        for (int i = 0; i < index.length; i++) {
+
+            selected[i] = tokens[index[i]];
+        }
+
+        return selected;
+    }
+
+    /**
+     * Reduced original lines
+     */
+    public int[] getOriginal() {
+
+        return original;
+    }
+
+    /**
+     * Reduced revised lines
+     */
+    public int[] getRevised() {
+
+        return revised;
+    }
+
+    /**
+     * Translate match of reduced lines to full sequences
+     *
+     * @param match Index of matching reduced revised line for every reduced original line, -1 for unmatched ones.
+     * @return Index of matching revised line for every original line, -1 for unmatched ones.
+     */
+    public int[] expand(final int[] match) {
+
+        final int[] expanded = new int[originalSize];
+        Arrays.fill(expanded, -1);
+
+        for (int i = 0; i < prefix; i++) {
+
+            expanded[i] = i;
+        }
+
+        for (int i = 0; i < suffix; i++) {
+
+            expanded[originalSize - 1 - i] = revisedSize - 1 - i;
+        }
+
+        for (int i = 0; i < match.length; i++) {
+
+            if (match[i] >= 0) {
+
+                expanded[originalIndex[i]] = revisedIndex[match[i]];
+            }
+        }
+
+        return expanded;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+/**
+ * Line of unified diff with its type and line numbers
+ *
+ * <p>Text excludes the prefix given by the type. Line numbers are 1-based
+ * and 0 for the side the line does not belong to.
+ *
+ * @author ogondza
+ */
+public final class DiffLine {
+
+    public enum Type {
+        OLD_FILE("--- ", "old"),
+        NEW_FILE("+++ ", "new"),
+        HUNK("", "pos"),
+        CONTEXT(" ", "con"),
+        REMOVED("-", "old"),
+        ADDED("+", "new"),
+        /** Summary of binary and archive diffs, "\ No newline at end of file" and alike */
+        NOTE("", "pos");
+
+        private final String prefix;
+        private final String cssClass;
+
+        private Type(final String prefix, final String cssClass) {
+
+            this.prefix = prefix;
+            this.cssClass = cssClass;
+        }
+
+        public String getPrefix() {
+
+            return prefix;
+        }
+
+        public String getCssClass() {
+
+            return cssClass;
+        }
+
+        /**
+         * Classify line appearing outside of a hunk
+         */
+        public static Type of(final String line) {
+
+            if (line.isEmpty()) return CONTEXT;
+
+            switch (line.charAt(0)) {
+                case ' ': return CONTEXT;
+                case '-': return line.startsWith("--- ") ? OLD_FILE : REMOVED;
+                case '+': return line.startsWith("+++ ") ? NEW_FILE : ADDED;
+                case '@': return line.startsWith("@@") ? HUNK : NOTE;
+                default: return NOTE;
+            }
+        }
+    }
+
+    private final Type type;
+    private final String text;
+    private final int oldNumber;
+    private final int newNumber;
+
+    public DiffLine(final Type type, final String text, final int oldNumber, final int newNumber) {
+
+        this.type = type;
+        this.text = text;
+        this.oldNumber = oldNumber;
+        this.newNumber = newNumber;
+    }
+
+    public Type getType() {
+
+        return type;
+    }
+
+    public String getText() {
+
+        return text;
+    }
+
+    public int getOldNumber() {
+
+        return oldNumber;
+    }
+
+    public int getNewNumber() {
+
+        return newNumber;
+    }
+
+    /**
+     * Line as it appears in unified diff
+     */
+    public String getLine() {
+
+        return type.prefix.isEmpty() ? text : type.prefix + text;
+    }
+
+    @Override
+    public String toString() {
+
+        return getLine();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read unified diff text into {@link DiffLine}s
+ *
+ * <p>Line numbers are tracked from hunk headers so the text can start with
+ * any hunk, as pages and cached diffs do. Lines inside a hunk are classified
+ * by their first character alone.
+ *
+ * @author ogondza
+ */
+public class DiffLines implements Iterator<DiffLine> {
+
+    private final Iterator<String> lines;
+
+    private int oldLine;
+    private int newLine;
+    private int oldRemaining = 0;
+    private int newRemaining = 0;
+
+    public DiffLines(final Iterator<String> lines) {
+
+        this.lines = lines;
+    }
+
+    public boolean hasNext() {
+
+        return lines.hasNext();
+    }
+
+    public DiffLine next() {
+
+        if (!hasNext()) throw new NoSuchElementException();
+
+        final String line = lines.next();
+        if (oldRemaining > 0 || newRemaining > 0) {
+
+            final DiffLine hunkLine = hunkLine(line);
+            if (hunkLine != null) return hunkLine;
+        }
+
+        final DiffLine.Type type = DiffLine.Type.of(line);
+        if (type == DiffLine.Type.HUNK) {
+
+            final Hunk hunk = Hunk.parseHeader(line);
+            if (hunk != null) {
+
+                oldLine = hunk.getOldStart();
+                newLine = hunk.getNewStart();
+                oldRemaining = hunk.getOldCount();
+                newRemaining = hunk.getNewCount();
+
+                return new DiffLine(type, line, oldLine, newLine);
+            }
+        }
+
+        return new DiffLine(type, line.substring(type.getPrefix().length()), 0, 0);
+    }
+
+    private DiffLine hunkLine(final String line) {
+
+        // Trailing whitespace, including the context prefix, might have been stripped
+        if (line.isEmpty()) return context("");
+
+        switch (line.charAt(0)) {
+            case ' ':
+                return context(line.substring(1));
+            case '-':
+                oldRemaining--;
+                return new DiffLine(DiffLine.Type.REMOVED, line.substring(1), oldLine++, 0);
+            case '+':
+                newRemaining--;
+                return new DiffLine(DiffLine.Type.ADDED, line.substring(1), 0, newLine++);
+            case '\\':
+                return new DiffLine(DiffLine.Type.NOTE, line, 0, 0);
+            default:
+                oldRemaining = newRemaining = 0;
+                return null;
+        }
+    }
+
+    private DiffLine context(final String text) {
+
+        oldRemaining--;
+        newRemaining--;
+
+        return new DiffLine(DiffLine.Type.CONTEXT, text, oldLine++, newLine++);
+    }
+
+    public void remove() {
+
+        throw new UnsupportedOperationException();
+    }
+}
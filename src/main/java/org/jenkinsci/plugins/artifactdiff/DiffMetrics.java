@@ -0,0 +1,412 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import hudson.Extension;
+import hudson.model.RootAction;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Time and memory spent serving artifact diffs
+ *
+ * <p>Every request measures wall time and bytes allocated by its thread in
+ * individual phases. Measurements are aggregated by output, size of compared
+ * artifacts and cache outcome. Requests slower than the threshold are logged
+ * with the breakdown.
+ *
+ * @author ogondza
+ */
+public final class DiffMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger(DiffMetrics.class.getName());
+
+    /**
+     * Requests taking longer are logged, in milliseconds
+     */
+    /*package*/ static final long SLOW_THRESHOLD = Long.getLong(
+            DiffMetrics.class.getName() + ".slowThreshold", 10000
+    );
+
+    private static final DiffMetrics instance = new DiffMetrics();
+
+    private static final ThreadLocal<Request> current = new ThreadLocal<Request>();
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private static final long[] SIZE_BUCKETS = {1L << 20, 16L << 20, 256L << 20};
+
+    private final Map<String, Stats> stats = new TreeMap<String, Stats>();
+
+    /*package*/ DiffMetrics() {}
+
+    public static DiffMetrics get() {
+
+        return instance;
+    }
+
+    /**
+     * Phases of serving the diff
+     *
+     * @author ogondza
+     */
+    public enum Phase {
+        /** Looking up cached diff */
+        CACHE,
+        /** Reading and preparing artifacts */
+        READ,
+        /** Running diff algorithm */
+        DIFF,
+        /** Formatting and recording unified diff */
+        FORMAT,
+        /** Looking up builds for build selector */
+        BUILDS,
+        /** Writing the response */
+        RENDER
+    }
+
+    /**
+     * Start measuring request served by current thread
+     */
+    public static Request start(final String output, final String description) {
+
+        final Request request = new Request(get(), output, description);
+        current.set(request);
+
+        return request;
+    }
+
+    /**
+     * Switch current request of the thread to the phase, if measured
+     */
+    public static void phase(final Phase phase) {
+
+        final Request request = current.get();
+        if (request != null) {
+
+            request.phase(phase);
+        }
+    }
+
+    /**
+     * Stop measuring current request of the thread so it can continue on other thread
+     */
+    /*package*/ static Request suspend() {
+
+        final Request request = current.get();
+        if (request != null) {
+
+            request.end();
+            current.remove();
+        }
+
+        return request;
+    }
+
+    /**
+     * Continue measuring suspended request on current thread
+     */
+    /*package*/ static void resume(final Request request) {
+
+        if (request != null) {
+
+            current.set(request);
+        }
+    }
+
+    /**
+     * Record cache outcome of current request of the thread, if measured
+     */
+    public static void cache(final String outcome) {
+
+        final Request request = current.get();
+        if (request != null) {
+
+            request.cache = outcome;
+        }
+    }
+
+    /*package*/ static String getSizeBucket(final long size) {
+
+        if (size < 0) return "unknown";
+
+        for (final long bucket: SIZE_BUCKETS) {
+
+            if (size < bucket) return "<" + (bucket >> 20) + "MB";
+        }
+
+        return ">=" + (SIZE_BUCKETS[SIZE_BUCKETS.length - 1] >> 20) + "MB";
+    }
+
+    private synchronized void record(final Request request) {
+
+        final String key = request.output + "/" + request.size + "/" + request.cache;
+
+        Stats stat = stats.get(key);
+        if (stat == null) {
+
+            stat = new Stats();
+            stats.put(key, stat);
+        }
+
+        stat.add(request);
+    }
+
+    /**
+     * Number of requests recorded under output/size/cache key
+     */
+    /*package*/ synchronized long getRequests(final String key) {
+
+        final Stats stat = stats.get(key);
+        return stat == null ? 0 : stat.requests;
+    }
+
+    /**
+     * Aggregated measurements
+     */
+    public synchronized JSONObject toJSON() {
+
+        final JSONObject json = new JSONObject();
+        for (final Map.Entry<String, Stats> entry: stats.entrySet()) {
+
+            json.element(entry.getKey(), entry.getValue().toJSON());
+        }
+
+        return json;
+    }
+
+    private static long getAllocatedBytes() {
+
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return 0;
+
+        final com.sun.management.ThreadMXBean mxBean = (com.sun.management.ThreadMXBean) threads;
+        if (!mxBean.isThreadAllocatedMemorySupported() || !mxBean.isThreadAllocatedMemoryEnabled()) return 0;
+
+        return mxBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Measurement of a single request
+     *
+     * @author ogondza
+     */
+    public static final class Request {
+
+        private final DiffMetrics metrics;
+        private final String output;
+        private final String description;
+        private String size = getSizeBucket(-1);
+        private String cache = "none";
+
+        private final long start = System.nanoTime();
+        private long total;
+        private final long[] nanos = new long[Phase.values().length];
+        private final long[] bytes = new long[Phase.values().length];
+
+        private Phase phase;
+        private long phaseStart;
+        private long phaseAllocated;
+
+        private Request(final DiffMetrics metrics, final String output, final String description) {
+
+            this.metrics = metrics;
+            this.output = output;
+            this.description = description;
+        }
+
+        /**
+         * Record total size of compared artifacts
+         */
+        public void size(final long size) {
+
+            this.size = getSizeBucket(size);
+        }
+
+        /*package*/ void phase(final Phase phase) {
+
+            end();
+
+            this.phase = phase;
+            phaseStart = System.nanoTime();
+            phaseAllocated = getAllocatedBytes();
+        }
+
+        private void end() {
+
+            if (phase == null) return;
+
+            nanos[phase.ordinal()] += System.nanoTime() - phaseStart;
+            bytes[phase.ordinal()] += getAllocatedBytes() - phaseAllocated;
+            phase = null;
+        }
+
+        /**
+         * Stop measuring and record the request
+         */
+        public void finish() {
+
+            end();
+            if (current.get() == this) {
+
+                current.remove();
+            }
+
+            total = System.nanoTime() - start;
+            metrics.record(this);
+
+            final long millis = total / 1000000;
+            if (millis >= SLOW_THRESHOLD) {
+
+                LOGGER.warning(String.format("Slow artifact diff %s (%s/%s/%s) took %d ms:%s",
+                        description, output, size, cache, millis, getBreakdown()
+                ));
+            }
+        }
+
+        private String getBreakdown() {
+
+            final StringBuilder breakdown = new StringBuilder();
+            for (final Phase phase: Phase.values()) {
+
+                if (nanos[phase.ordinal()] == 0) continue;
+
+                breakdown.append(String.format(" %s %d ms (%d KB allocated)",
+                        phase.name().toLowerCase(Locale.ENGLISH),
+                        nanos[phase.ordinal()] / 1000000,
+                        bytes[phase.ordinal()] / 1024
+                ));
+            }
+
+            return breakdown.toString();
+        }
+    }
+
+    /**
+     * Aggregated measurements of requests
+     *
+     * @author ogondza
+     */
+    private static final class Stats {
+
+        private long requests = 0;
+        private long totalNanos = 0;
+        private long maxNanos = 0;
+        private final long[] phaseCount = new long[Phase.values().length];
+        private final long[] phaseNanos = new long[Phase.values().length];
+        private final long[] phaseMaxNanos = new long[Phase.values().length];
+        private final long[] phaseBytes = new long[Phase.values().length];
+
+        private void add(final Request request) {
+
+            final long nanos = request.total;
+
+            requests++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+
+            for (int i = 0; i < phaseCount.length; i++) {
+
+                if (request.nanos[i] == 0) continue;
+
+                phaseCount[i]++;
+                phaseNanos[i] += request.nanos[i];
+                phaseMaxNanos[i] = Math.max(phaseMaxNanos[i], request.nanos[i]);
+                phaseBytes[i] += request.bytes[i];
+            }
+        }
+
+        private JSONObject toJSON() {
+
+            final JSONObject phases = new JSONObject();
+            for (final Phase phase: Phase.values()) {
+
+                final int i = phase.ordinal();
+                if (phaseCount[i] == 0) continue;
+
+                phases.element(phase.name().toLowerCase(Locale.ENGLISH), new JSONObject()
+                        .element("count", phaseCount[i])
+                        .element("totalMillis", phaseNanos[i] / 1000000)
+                        .element("maxMillis", phaseMaxNanos[i] / 1000000)
+                        .element("allocatedBytes", phaseBytes[i])
+                );
+            }
+
+            return new JSONObject()
+                    .element("requests", requests)
+                    .element("totalMillis", totalNanos / 1000000)
+                    .element("maxMillis", maxNanos / 1000000)
+                    .element("phases", phases)
+            ;
+        }
+    }
+
+    /**
+     * Serve aggregated measurements as JSON to administrators
+     *
+     * <p>Diff cache counters are published under <tt>cache</tt>.
+     *
+     * @author ogondza
+     */
+    @Extension
+    public static final class Endpoint implements RootAction {
+
+        public String getIconFileName() {
+
+            return null;
+        }
+
+        public String getDisplayName() {
+
+            return "Artifact diff metrics";
+        }
+
+        public String getUrlName() {
+
+            return "artifact-diff-metrics";
+        }
+
+        public void doIndex(final StaplerRequest req, final StaplerResponse rsp) throws IOException {
+
+            Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+
+            final JSONObject json = get().toJSON();
+            json.element("cache", DiffCache.get().toJSON());
+
+            rsp.setContentType("application/json;charset=UTF-8");
+            json.write(rsp.getWriter());
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.io.LineIterator;
+
+/**
+ * Range of diff hunks sent in single response
+ *
+ * <p>Lines are passed through until the requested hunks are exhausted or the
+ * output budget is spent, whichever comes first. In the latter case the last
+ * hunk can be cut short. Diff header is always included.
+ *
+ * <p>Number of hunks of a diff that is being formatted is not known upfront,
+ * the rest of the {@link IndexedLines} is read once it is asked for. Whether
+ * the page is truncated is known without reading past the hunk it ended in.
+ *
+ * @author ogondza
+ */
+public class DiffPage implements Iterator<String>, Closeable {
+
+    private final Iterator<String> header;
+    private final Iterator<String> lines;
+    private final int first;
+    private final int to;
+    private int hunks;
+    private final long maxLines;
+    private final long maxBytes;
+
+    /** Index of hunk header to be read next */
+    private int nextHunk;
+    private long lineCount = 0;
+    private long byteCount = 0;
+
+    private String pending;
+    /** First hunk not sent completely, known once the page ended */
+    private int resumeAt = -1;
+    /** Some hunks were left out of the page, known once the page ended */
+    private boolean truncated;
+
+    /**
+     * @param lines Diff lines without header starting at hunk <tt>position</tt>.
+     * @param first First hunk to send.
+     * @param to Hunk to stop at, exclusive.
+     * @param hunks Total number of hunks in diff, negative when lines are {@link IndexedLines} yet to be read.
+     */
+    public DiffPage(
+            final List<String> header,
+            final Iterator<String> lines,
+            final int position,
+            final int first,
+            final int to,
+            final int hunks,
+            final long maxLines,
+            final long maxBytes
+    ) {
+
+        if (position > first) throw new IllegalArgumentException(
+                "Lines starts after requested hunk " + first
+        );
+
+        this.header = header.iterator();
+        this.lines = lines;
+        this.nextHunk = position;
+        this.first = first;
+        this.to = to;
+        this.hunks = hunks;
+        this.maxLines = maxLines;
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean hasNext() {
+
+        if (header.hasNext()) return true;
+        if (pending != null) return true;
+        if (resumeAt >= 0) return false;
+
+        while (lines.hasNext()) {
+
+            final String line = lines.next();
+            final boolean hunkHeader = line.startsWith("@@");
+            final int lineHunk = hunkHeader ? nextHunk : nextHunk - 1;
+
+            // Skip hunks preceding the page, lines preceding the first hunk are part of the header
+            if (lineHunk < first && lineHunk >= 0) {
+
+                if (hunkHeader) {
+
+                    nextHunk++;
+                }
+
+                continue;
+            }
+
+            if (hunkHeader && lineHunk >= to) {
+
+                resumeAt = lineHunk;
+                truncated = true;
+                return false;
+            }
+
+            if (lineCount >= maxLines || byteCount >= maxBytes) {
+
+                // Resend the hunk cut short unless the page was not able to hold even that
+                if (hunkHeader || lineHunk > first) {
+
+                    resumeAt = lineHunk;
+                    truncated = true;
+                } else {
+
+                    resumeAt = lineHunk + 1;
+                    truncated = hunks < 0 ? skipHunk() : resumeAt < hunks;
+                }
+
+                return false;
+            }
+
+            if (hunkHeader) {
+
+                nextHunk++;
+            }
+
+            pending = line;
+            return true;
+        }
+
+        resumeAt = hunks < 0 ? nextHunk : hunks;
+        truncated = false;
+        return false;
+    }
+
+    /**
+     * Read past the rest of the hunk the page ended in
+     *
+     * @return true in case another hunk follows.
+     */
+    private boolean skipHunk() {
+
+        while (lines.hasNext()) {
+
+            if (lines.next().startsWith("@@")) return true;
+        }
+
+        return false;
+    }
+
+    public String next() {
+
+        if (!hasNext()) throw new NoSuchElementException();
+
+        if (header.hasNext()) return header.next();
+
+        final String line = pending;
+        pending = null;
+
+        lineCount++;
+        byteCount += getByteLength(line) + 1;
+
+        return line;
+    }
+
+    /**
+     * Number of hunks left out of the page
+     *
+     * <p>Available once the page was iterated. Diff that is being formatted
+     * is read completely, see {@link #isRemainingKnown()}.
+     */
+    public int getRemaining() {
+
+        return Math.max(0, getHunks() - getNext());
+    }
+
+    /**
+     * First hunk of the next page
+     */
+    public int getNext() {
+
+        if (resumeAt < 0) throw new IllegalStateException("Page was not read completely");
+
+        return resumeAt;
+    }
+
+    /**
+     * Some hunks were left out of the page
+     *
+     * <p>Available once the page was iterated.
+     */
+    public boolean isTruncated() {
+
+        if (resumeAt < 0) throw new IllegalStateException("Page was not read completely");
+
+        return truncated;
+    }
+
+    /**
+     * Number of hunks left out of the page is known without formatting the rest of the diff
+     */
+    public boolean isRemainingKnown() {
+
+        if (resumeAt < 0) throw new IllegalStateException("Page was not read completely");
+
+        return hunks >= 0 || !lines.hasNext();
+    }
+
+    /**
+     * Total number of hunks in diff
+     *
+     * <p>Available once the page was iterated.
+     */
+    public int getHunks() {
+
+        if (hunks < 0) {
+
+            if (resumeAt < 0) throw new IllegalStateException("Page was not read completely");
+
+            hunks = ((IndexedLines) lines).getIndex().size();
+        }
+
+        return hunks;
+    }
+
+    public void remove() {
+
+        throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+
+        if (lines instanceof LineIterator) {
+
+            LineIterator.closeQuietly((LineIterator) lines);
+        }
+
+        if (lines instanceof IndexedLines) {
+
+            ((IndexedLines) lines).close();
+        }
+    }
+
+    /**
+     * UTF-8 encoded length
+     */
+    private static int getByteLength(final String line) {
+
+        int length = 0;
+        for (int i = 0; i < line.length(); i++) {
+
+            final char c = line.charAt(i);
+            length += c < 0x80 ? 1 : (c < 0x800 ? 2 : 3);
+        }
+
+        return length;
+    }
+}
@@ -23,24 +23,41 @@
  */
 package org.jenkinsci.plugins.artifactdiff;
 
-import hudson.FilePath;
+import hudson.PluginWrapper;
+import hudson.Util;
 import hudson.model.Run;
 
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
 
 import jenkins.model.Jenkins;
 
-import org.apache.commons.lang.StringUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullWriter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
@@ -51,14 +68,36 @@ import org.kohsuke.stapler.StaplerResponse;
  */
 public abstract class DiffResponse extends Response {
 
+    private static final Logger LOGGER = Logger.getLogger(DiffResponse.class.getName());
+
+    /** Identical concurrent requests wait for a single computation */
+    private static final SingleFlight<DiffCache.Key, UnifiedDiff> computations = new SingleFlight<DiffCache.Key, UnifiedDiff>();
+
+    /** Responses embed plugin markup, so they are not valid past its restart */
+    private static final long LOADED = System.currentTimeMillis();
+
     private static final String MALFORMED_URL = "Malformed url";
 
     private static final String ILLEGAL_FILE_PATH = "Illegal file path";
 
+    private static final String MALFORMED_HUNKS = "Malformed hunk range";
+
     private static final Pattern urlPattern = Pattern.compile(
             "^/(\\d+)/(.*)$"
     );
 
+    private static final Pattern hunksPattern = Pattern.compile(
+            "^(\\d+)(?:-(\\d*))?$"
+    );
+
+    /*package*/ static final long MAX_LINES = Long.getLong(
+            DiffResponse.class.getName() + ".maxLines", 100000
+    );
+
+    /*package*/ static final long MAX_BYTES = Long.getLong(
+            DiffResponse.class.getName() + ".maxBytes", 8L * 1024 * 1024
+    );
+
     protected final StaplerRequest req;
     protected final StaplerResponse rsp;
 
@@ -67,6 +106,28 @@ public abstract class DiffResponse extends Response {
     protected final Run<?, ?> rhsRun;
     protected final ArtifactDifference diff;
 
+    /** Requested hunk range, the end is exclusive */
+    protected final int hunksFrom;
+    protected final int hunksTo;
+
+    /** Name of diff algorithm to use */
+    protected final String algorithm;
+
+    /** Lines are compared in normalized form */
+    protected final LineNormalizer normalizer;
+
+    /** Index of the whole diff the page is read from, if any */
+    private HunkIndex index;
+
+    /** Lines of the diff computed for this request, indexed as they are sent */
+    private IndexedLines computed;
+
+    /** Diff computed or waited for by this request, if any */
+    private UnifiedDiff computedDiff;
+
+    /** The request computed the diff, as opposed to waiting for another one */
+    private boolean computing = false;
+
     public DiffResponse(
             final ArtifactDifference diff,
             final StaplerRequest req,
@@ -84,6 +145,41 @@ public abstract class DiffResponse extends Response {
         this.lhsRun = diff.getOwner();
         this.rhsRun = getRhsRun(matcher);
         this.diff = diff;
+
+        final int[] hunks = getHunks(req.getParameter("hunks"));
+        this.hunksFrom = hunks[0];
+        this.hunksTo = hunks[1];
+
+        this.algorithm = getAlgorithm(req.getParameter("algorithm"));
+        this.normalizer = getNormalizer(req.getParameter("ignore"), req.getParameterValues("strip"));
+    }
+
+    private String getAlgorithm(final String algorithm) throws ServletException {
+
+        if (algorithm == null) return DiffAlgorithm.forPath(path);
+
+        if (DiffAlgorithm.byName(algorithm) == null) {
+
+            throw new Response.Exception.BadRequest("No such algorithm: " + algorithm);
+        }
+
+        return algorithm;
+    }
+
+    private LineNormalizer getNormalizer(final String ignore, final String[] strip) throws ServletException {
+
+        if (ignore == null && strip == null) return LineNormalizer.forPath(path);
+
+        try {
+
+            return LineNormalizer.of(
+                    ignore == null ? Collections.<String>emptyList() : Arrays.asList(ignore.split(",")),
+                    strip == null ? Collections.<String>emptyList() : Arrays.asList(strip)
+            );
+        } catch (IllegalArgumentException ex) {
+
+            throw new Response.Exception.BadRequest(ex.getMessage());
+        }
     }
 
     private Run<?, ?> getRhsRun(final Matcher matcher) throws ServletException {
@@ -99,6 +195,31 @@ public abstract class DiffResponse extends Response {
         throw new Response.Exception.NotFound("No such build");
     }
 
+    private int[] getHunks(final String hunks) throws ServletException {
+
+        if (hunks == null) return new int[] {0, Integer.MAX_VALUE};
+
+        final Matcher matcher = hunksPattern.matcher(hunks);
+        if (!matcher.matches()) throw new Response.Exception.BadRequest(MALFORMED_HUNKS);
+
+        try {
+
+            final int from = Integer.parseInt(matcher.group(1));
+            final String to = matcher.group(2);
+
+            if (to == null) return new int[] {from, from + 1};
+            if (to.isEmpty()) return new int[] {from, Integer.MAX_VALUE};
+
+            final int end = Integer.parseInt(to);
+            if (end <= from) throw new Response.Exception.BadRequest(MALFORMED_HUNKS);
+
+            return new int[] {from, end};
+        } catch (NumberFormatException ex) {
+
+            throw new Response.Exception.BadRequest(MALFORMED_HUNKS);
+        }
+    }
+
     private String getPath(final Matcher matcher) throws ServletException {
 
         final String path = matcher.group(2);
@@ -111,195 +232,1143 @@ public abstract class DiffResponse extends Response {
         return path;
     }
 
-    protected List<String> calculateDiff(
-            final Run<?, ?> lhsRun,
-            final Run<?, ?> rhsRun,
-            final String path,
-            final StaplerResponse rsp
-    ) throws IOException {
+    /**
+     * Read requested hunks of unified diff of the artifacts
+     *
+     * <p>Diffs already cached are read starting at the first requested hunk.
+     * Caller is supposed to close the page.
+     */
+    protected DiffPage readPage() throws IOException, ServletException {
 
-        final FilePath lhsFile = new FilePath(lhsRun.getArtifactsDir()).child(path);
-        final FilePath rhsFile = new FilePath(rhsRun.getArtifactsDir()).child(path);
-        final String lhsPath = getPath(lhsRun, path);
-        final String rhsPath = getPath(rhsRun, path);
+        DiffMetrics.phase(DiffMetrics.Phase.CACHE);
+
+        // Byte-identical artifacts yield empty diff, no need to read them
+        if (ArtifactManifest.identical(lhsRun, rhsRun, ArchiveDiff.getArchive(path))) {
+
+            DiffMetrics.cache("identical");
+            return getPage(Collections.<String>emptyList(), Collections.<String>emptyList().iterator(), 0, 0);
+        }
+
+        final DiffCache cache = DiffCache.get();
+        final DiffCache.Key key = getKey();
+
+        // Looked up first so every miss is counted
+        final Reader cached = cache.lookup(key);
+        if (cached != null) {
+
+            final HunkIndex index = cache.getIndex(key);
+            if (index != null) {
+
+                DiffMetrics.cache("hit");
+                return readPage(cached, index);
+            }
+
+            // Evicted meanwhile
+            cached.close();
+        }
 
-        return new FilePathDiff().getDiff(
-                new FilePathDiff.Entry(lhsFile, lhsPath),
-                new FilePathDiff.Entry(rhsFile, rhsPath)
+        final UnifiedDiff diff = computeDiff(key);
+        computedDiff = diff;
+
+        // The diff is formatted once, for the page and the cache
+        DiffMetrics.phase(DiffMetrics.Phase.FORMAT);
+        computed = new IndexedLines(
+                diff.iterator(), diff.getType(), computing ? cache.record(key, diff.getType(), new NullWriter()) : null
         );
+
+        final List<String> header = new ArrayList<String>(2);
+        if (!diff.isEmpty()) {
+
+            header.add(computed.next());
+            header.add(computed.next());
+        }
+
+        return getPage(header, computed, 0, -1);
     }
 
-    private String getPath(final Run<?, ?> run, final String path) {
+    /**
+     * Compute the diff or wait for identical computation in progress
+     */
+    private UnifiedDiff computeDiff(final DiffCache.Key key) throws IOException, ServletException {
 
-        return String.format("%s/%s", run.getNumber(), path);
+        // Overridden by the request computing the diff, others only waited for it
+        DiffMetrics.cache("coalesced");
+        return computations.execute(key, new Callable<UnifiedDiff>() {
+
+            public UnifiedDiff call() throws IOException, ServletException {
+
+                DiffMetrics.cache("miss");
+                computing = true;
+                return DiffExecutor.get().execute(getInputSize(), new Callable<UnifiedDiff>() {
+
+                    public UnifiedDiff call() throws IOException {
+
+                        return calculateDiff(lhsRun, rhsRun, path);
+                    }
+                });
+            }
+        });
     }
 
-    public void generateResponse(
-            final StaplerRequest req,
-            final StaplerResponse rsp,
-            final Object node
-    ) throws IOException, ServletException {
+    /**
+     * Estimated number of bytes the diff computation reads
+     */
+    private long getInputSize() throws IOException {
 
-        rsp.setCharacterEncoding("UTF-8");
+        final String archive = ArchiveDiff.getArchive(path);
+        final File lhsFile = new File(lhsRun.getArtifactsDir(), archive);
+        final File rhsFile = new File(rhsRun.getArtifactsDir(), archive);
+
+        final String entry = ArchiveDiff.getEntry(path);
+        if (entry == null) return lhsFile.length() + rhsFile.length();
+
+        return new FilePathDiff.ArchiveEntry(lhsFile, entry, null).getSize()
+                + new FilePathDiff.ArchiveEntry(rhsFile, entry, null).getSize()
+        ;
+    }
+
+    /**
+     * Identify the diff by compared artifacts, the algorithm and normalization
+     */
+    private DiffCache.Key getKey() {
+
+        final String variant = normalizer.isNone()
+                ? algorithm
+                : algorithm + ";" + normalizer.getVariant()
+        ;
 
-        generate(calculateDiff(lhsRun, rhsRun, path, rsp));
+        return DiffCache.Key.of(lhsRun, rhsRun, path, variant);
     }
 
-    abstract void generate(final List<String> diff) throws IOException, ServletException;
+    private DiffPage readPage(final Reader cached, final HunkIndex index) throws IOException {
+
+        this.index = index;
+        return readPage(cached, index, hunksFrom, hunksTo, MAX_LINES, MAX_BYTES);
+    }
 
     /**
-     * Plain text response
-     *
-     * @author ogondza
+     * Read page of cached diff skipping the hunks preceding it
      */
-    public static class Plain extends DiffResponse {
+    @SuppressWarnings("unchecked")
+    /*package*/ static DiffPage readPage(
+            final Reader cached,
+            final HunkIndex index,
+            final int hunksFrom,
+            final int hunksTo,
+            final long maxLines,
+            final long maxBytes
+    ) throws IOException {
 
-        public Plain(
-                final ArtifactDifference diff,
-                final StaplerRequest req,
-                final StaplerResponse rsp
-        ) throws IOException, ServletException {
+        final BufferedReader reader = new BufferedReader(cached);
 
-            super(diff, req, rsp);
-        }
+        boolean valid = false;
+        try {
 
-        public void generate(final List<String> diff) throws IOException, ServletException {
+            long position = 0;
+            final List<String> header = new ArrayList<String>(2);
+            if (index.size() > 0) {
 
-            rsp.setContentType("text/plain");
+                for (int i = 0; i < 2; i++) {
 
-            try {
+                    final String line = reader.readLine();
+                    header.add(line);
+                    position += line.length() + 1;
+                }
+            }
 
-                rsp.getWriter().print(StringUtils.join(diff, "\n"));
-            } catch(FileNotFoundException ex) {
+            // Nothing but the header past the last hunk, diff without hunks is sent whole
+            if (index.size() > 0 && hunksFrom >= index.size()) return new DiffPage(
+                    header, Collections.<String>emptyList().iterator(), index.size(),
+                    hunksFrom, hunksTo, index.size(), maxLines, maxBytes
+            );
 
-                rsp.setContentType("text/html");
-                throw new Exception.NotFound("File not found: " + ex.getMessage());
+            int start = 0;
+            if (index.size() > 0) {
+
+                start = hunksFrom;
+                skip(reader, index.getOffset(start) - position);
+            }
+
+            final DiffPage page = new DiffPage(
+                    header, (Iterator<String>) IOUtils.lineIterator(reader), start,
+                    hunksFrom, hunksTo, index.size(), maxLines, maxBytes
+            );
+            valid = true;
+
+            return page;
+        } finally {
+
+            if (!valid) {
+
+                reader.close();
             }
         }
     }
 
+    private static void skip(final Reader reader, long chars) throws IOException {
+
+        while (chars > 0) {
+
+            final long skipped = reader.skip(chars);
+            if (skipped <= 0) throw new EOFException("Cached diff is shorter than its index");
+
+            chars -= skipped;
+        }
+    }
+
+    private DiffPage getPage(
+            final List<String> header, final Iterator<String> lines, final int position, final int hunks
+    ) {
+
+        return new DiffPage(
+                header, lines, position, hunksFrom, hunksTo, hunks, MAX_LINES, MAX_BYTES
+        );
+    }
+
     /**
-     * Html Response
-     *
-     * @author ogondza
+     * Url query of the page following the page sent
      */
-    public static class Html extends DiffResponse {
+    protected String getNextPageQuery(final DiffPage page) {
+
+        final int next = page.getNext();
+
+        final String hunks = hunksTo == Integer.MAX_VALUE
+                ? String.format("hunks=%d-", next)
+                : String.format("hunks=%d-%d", next, next + hunksTo - hunksFrom)
+        ;
+
+        return hunks + getOptionsQuery();
+    }
+
+    /**
+     * Url query of the options requested explicitly
+     */
+    public String getOptionsQuery() {
+
+        final StringBuilder query = new StringBuilder();
+
+        final String algorithm = req.getParameter("algorithm");
+        if (algorithm != null) {
 
-        private static final Map<String, String> decorators = new HashMap<String, String>();
-        static {
-            decorators.put("+", "new");
-            decorators.put("-", "old");
-            decorators.put("@@", "pos");
-            // Match context lines. Everything else is supposed to be matched by previous patterns
-            decorators.put(" ", "con");
+            query.append("&algorithm=").append(algorithm);
         }
 
-        public Html(
-                final ArtifactDifference diff,
-                final StaplerRequest req,
-                final StaplerResponse rsp
-        ) throws IOException, ServletException {
+        final String ignore = req.getParameter("ignore");
+        if (ignore != null) {
 
-            super(diff, req, rsp);
+            query.append("&ignore=").append(encode(ignore));
         }
 
-        public void generate(final List<String> lines) throws IOException, ServletException {
+        final String[] strip = req.getParameterValues("strip");
+        if (strip != null) {
 
-            handleRequest();
+            for (final String expression: strip) {
 
-            req.setAttribute("lhs", lhsRun);
-            req.setAttribute("rhs", rhsRun);
-            req.setAttribute("buildList", getRelevantBuilds(rhsRun));
-            req.setAttribute("diff", lines);
-            req.setAttribute("outcome", this);
-            req.setAttribute("path", path);
-            req.getView(diff, "html.jelly").forward(req, rsp);
+                query.append("&strip=").append(encode(expression));
+            }
         }
 
-        public String getLineClass(final String line) {
+        return query.toString();
+    }
 
-            if (line.isEmpty()) return "con";
+    private static String encode(final String value) {
 
-            for (final Entry<String, String> dec: decorators.entrySet()) {
+        try {
 
-                if (line.startsWith(dec.getKey())) return dec.getValue();
-            }
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
 
-            throw new IllegalArgumentException(line + " does not look like a diff line");
+            throw new AssertionError(ex);
         }
+    }
 
-        /**
-         * Get build worth comparing
-         *
-         * <p>Builds that has an artifact on current filepath
-         */
-        private List<?> getRelevantBuilds(Run<?, ?> run) throws IOException {
+    protected UnifiedDiff calculateDiff(
+            final Run<?, ?> lhsRun,
+            final Run<?, ?> rhsRun,
+            final String path
+    ) throws IOException {
 
-            final String artifactDir = run.getArtifactsDir().getCanonicalPath();
+        final String archive = ArchiveDiff.getArchive(path);
+        final File lhsFile = new File(lhsRun.getArtifactsDir(), archive);
+        final File rhsFile = new File(rhsRun.getArtifactsDir(), archive);
+        final String lhsPath = getPath(lhsRun, path);
+        final String rhsPath = getPath(rhsRun, path);
 
-            final List<Run<?, ?>> relevantBuilds = new ArrayList<Run<?, ?>>();
-            for (final Run<?, ?> build: run.getParent().getBuilds()) {
+        DiffAlgorithm algorithm = DiffAlgorithm.byName(this.algorithm);
+        if (algorithm == null) {
 
-                // Use current build and all the other builds that has artifacts
-                if (hasArtifact(build, artifactDir) || build.equals(run)) {
+            LOGGER.warning("No such algorithm configured: " + this.algorithm);
+            algorithm = new DiffAlgorithm.Myers();
+        }
 
-                  relevantBuilds.add(build);
-                }
-            }
+        final String entry = ArchiveDiff.getEntry(path);
+        if (entry != null) {
 
-            return relevantBuilds;
+            return new FilePathDiff(algorithm, normalizer).diff(
+                    new FilePathDiff.ArchiveEntry(lhsFile, entry, lhsPath),
+                    new FilePathDiff.ArchiveEntry(rhsFile, entry, rhsPath)
+            );
         }
 
-        private boolean hasArtifact(
-                final Run<?, ?> build, final String artifactDir
-        ) throws IOException {
+        return new FilePathDiff(algorithm, normalizer).diff(
+                FilePathDiff.MappedEntry.of(lhsFile, lhsPath),
+                FilePathDiff.MappedEntry.of(rhsFile, rhsPath)
+        );
+    }
 
-            for(final Run<?, ?>.Artifact artifact: build.getArtifacts()) {
+    private String getPath(final Run<?, ?> run, final String path) {
 
-                if (diff.getFilename(artifact, artifactDir).equals(path)) return true;
-            }
+        return String.format("%s/%s", run.getNumber(), path);
+    }
 
-            return false;
-        }
+    /**
+     * Run the request pipeline
+     *
+     * <p>Request is parsed and validated upon construction, then it can be
+     * redirected. Artifacts are not read unless both stages pass. Diff page
+     * is computed then, or read from cache, and rendered.
+     */
+    public void generateResponse(
+            final StaplerRequest req,
+            final StaplerResponse rsp,
+            final Object node
+    ) throws IOException, ServletException {
+
+        rsp.setCharacterEncoding("UTF-8");
 
-        private void handleRequest() throws IOException {
+        if (redirect()) return;
 
-            final int lhsNumber = getNumber("lhs", lhsRun);
-            final int rhsNumber = getNumber("rhs", rhsRun);
+        final DiffMetrics.Request metrics = DiffMetrics.start(
+                getOutput(),
+                lhsRun.getParent().getFullName() + " #" + lhsRun.getNumber() + "..#" + rhsRun.getNumber() + " " + path
+        );
+        try {
 
-            final String oldUrl = getUrl(lhsRun.getNumber(), rhsRun.getNumber());
-            final String newUrl = getUrl(lhsNumber, rhsNumber);
+            metrics.size(getArtifactSize());
 
-            if (!oldUrl.equals(newUrl)) {
+            if (notModified()) {
 
-                rsp.sendRedirect(getRedirectUrl(newUrl));
+                DiffMetrics.cache("not-modified");
+                return;
             }
-        }
-
-        private int getNumber(final String param, Run<?, ?> run) {
 
+            final DiffPage page = compute();
+            boolean completing = false;
             try {
 
-                return Integer.parseInt(req.getParameter(param));
-            } catch (NumberFormatException ex) {
+                DiffMetrics.phase(DiffMetrics.Phase.RENDER);
+                render(page);
 
-                return run.getNumber();
+                completing = completeRecording();
+            } finally {
+
+                if (!completing) {
+
+                    page.close();
+                }
             }
+        } finally {
+
+            metrics.finish();
         }
+    }
 
-        private String getUrl(final int lhsNumber, final int rhsNumber) {
+    /**
+     * Format the rest of the diff computed for the request in background so it gets cached
+     *
+     * <p>Recording is discarded in case the executor turns it down.
+     *
+     * @return true in case the lines are closed once formatted.
+     */
+    private boolean completeRecording() throws IOException {
 
-            return String.format("%s/artifact-diff/%s/", lhsNumber, rhsNumber);
+        if (computed == null || !computing) return false;
+
+        final IndexedLines lines = computed;
+        return DiffExecutor.get().schedule(getInputSize(), new Runnable() {
+
+            public void run() {
+
+                try {
+
+                    lines.getIndex();
+                } finally {
+
+                    lines.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Combined size of compared artifacts
+     */
+    private long getArtifactSize() {
+
+        final String archive = ArchiveDiff.getArchive(path);
+        return new File(lhsRun.getArtifactsDir(), archive).length()
+                + new File(rhsRun.getArtifactsDir(), archive).length()
+        ;
+    }
+
+    /**
+     * Redirect the request elsewhere
+     *
+     * @return true in case the response was sent
+     */
+    protected boolean redirect() throws IOException {
+
+        return false;
+    }
+
+    /**
+     * Send validators and answer conditional request the client has the response for
+     *
+     * <p>Responses are validated using artifact sizes and modification times
+     * so no artifact content is read. Responses older than the plugin are
+     * not considered current.
+     *
+     * @return true in case the response was sent
+     */
+    protected boolean notModified() throws IOException {
+
+        // Artifacts of running builds can still change
+        if (lhsRun.isBuilding() || rhsRun.isBuilding()) return false;
+
+        final String etag = getETag();
+        rsp.setHeader("ETag", etag);
+        rsp.setHeader("Vary", "Accept-Encoding");
+        rsp.setHeader("Cache-Control", "private, max-age=0, must-revalidate");
+
+        final String archive = ArchiveDiff.getArchive(path);
+        final long artifactsModified = Math.max(
+                new File(lhsRun.getArtifactsDir(), archive).lastModified(),
+                new File(rhsRun.getArtifactsDir(), archive).lastModified()
+        );
+        final long lastModified = artifactsModified > 0 ? Math.max(artifactsModified, LOADED) : 0;
+        if (lastModified > 0) {
+
+            rsp.setDateHeader("Last-Modified", lastModified);
         }
 
-        private String getRedirectUrl(final String newUrl) {
+        final String ifNoneMatch = req.getHeader("If-None-Match");
+        final boolean current = ifNoneMatch != null
+                ? matches(ifNoneMatch, etag)
+                // Header has second precision
+                : lastModified > 0 && req.getDateHeader("If-Modified-Since") >= lastModified / 1000 * 1000
+        ;
 
-            return String.format("%s%s%s%s?output=html",
-                    Jenkins.getInstance().getRootUrl(),
-                    lhsRun.getParent().getUrl(),
-                    newUrl,
-                    path
-            );
+        if (!current) return false;
+
+        rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return true;
+    }
+
+    /**
+     * Strong validator of the response
+     *
+     * <p>Derived from the diff key that covers builds, path, artifact stamps
+     * and the algorithm, response type, the query holding other options and
+     * the plugin version.
+     */
+    /*package*/ String getETag() {
+
+        final String query = req.getQueryString();
+        final String representation = getClass().getSimpleName() + "\n" + getKey() + "\n"
+                + (query == null ? "" : query) + "\n" + (isGzip() ? "gzip" : "identity") + "\n"
+                + getPluginVersion()
+        ;
+
+        try {
+
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+
+            return '"' + Util.toHexString(digest.digest(representation.getBytes("UTF-8"))) + '"';
+        } catch (NoSuchAlgorithmException ex) {
+
+            throw new AssertionError(ex);
+        } catch (UnsupportedEncodingException ex) {
+
+            throw new AssertionError(ex);
+        }
+    }
+
+    private static String getPluginVersion() {
+
+        final Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) return "";
+
+        final PluginWrapper plugin = jenkins.getPluginManager().whichPlugin(DiffResponse.class);
+
+        return plugin == null ? "" : plugin.getVersion();
+    }
+
+    /**
+     * Client accepts gzip content encoding
+     */
+    protected boolean isGzip() {
+
+        return acceptsGzip(req.getHeader("Accept-Encoding"));
+    }
+
+    /*package*/ static boolean acceptsGzip(final String acceptEncoding) {
+
+        if (acceptEncoding == null) return false;
+
+        for (final String coding: acceptEncoding.split(",")) {
+
+            final String[] params = coding.split(";");
+            final String name = params[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equalsIgnoreCase("x-gzip")) continue;
+
+            for (int i = 1; i < params.length; i++) {
+
+                final String param = params[i].trim();
+                if (param.startsWith("q=") && param.substring(2).matches("0(\\.0*)?")) return false;
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Send the whole diff compressed as it is cached
+     *
+     * <p>Possible only when the diff is not split into pages.
+     *
+     * @return true in case the response was sent
+     */
+    protected boolean transferCompressed() throws IOException {
+
+        if (hunksFrom != 0 || hunksTo != Integer.MAX_VALUE) return false;
+
+        final DiffCache cache = DiffCache.get();
+        final DiffCache.Key key = getKey();
+
+        final HunkIndex index = cache.getIndex(key);
+        if (index == null || index.getLines() > MAX_LINES || index.getBytes() + index.getLines() > MAX_BYTES) return false;
+
+        return cache.transferCompressed(key, Channels.newChannel(rsp.getOutputStream()));
+    }
+
+    /*package*/ static boolean matches(final String ifNoneMatch, final String etag) {
+
+        for (String candidate: ifNoneMatch.split(",")) {
+
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+
+                candidate = candidate.substring(2);
+            }
+
+            if (candidate.equals("*") || candidate.equals(etag)) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Compute the diff page to render
+     */
+    protected DiffPage compute() throws IOException, ServletException {
+
+        return readPage();
+    }
+
+    abstract void render(final DiffPage page) throws IOException, ServletException;
+
+    /**
+     * Output mode the response is for
+     */
+    abstract String getOutput();
+
+    /**
+     * Side-by-side alignment of the diff the page was read from
+     *
+     * <p>Diffs the cache does not hold, as they were evicted or are too large
+     * to be cached, are aligned as computed and the alignment is cached alone.
+     */
+    protected RowAlignment getAlignment() throws IOException, ServletException {
+
+        // Identical artifacts, nothing was diffed
+        if (getIndex() == null) return RowAlignment.EMPTY;
+
+        final DiffCache cache = DiffCache.get();
+        final RowAlignment cached = cache.getAlignment(getKey());
+        if (cached != null) return cached;
+
+        final RowAlignment alignment;
+        final Reader reader = new LinesReader(getComputedDiff().iterator());
+        try {
+
+            alignment = RowAlignment.of(reader);
+        } finally {
+
+            reader.close();
+        }
+
+        cache.putAlignment(getKey(), alignment);
+
+        return alignment;
+    }
+
+    /**
+     * Read slice of side-by-side rows of cached or computed diff
+     */
+    protected List<RowAlignment.Row> readRows(
+            final RowAlignment alignment, final int from, final int count
+    ) throws IOException, ServletException {
+
+        if (alignment.getRows() == 0) return Collections.emptyList();
+
+        Reader reader = computedDiff == null
+                ? DiffCache.get().lookup(getKey())
+                : null
+        ;
+
+        if (reader == null) {
+
+            reader = new LinesReader(getComputedDiff().iterator());
+        }
+
+        try {
+
+            return alignment.read(reader, from, count);
+        } finally {
+
+            reader.close();
+        }
+    }
+
+    /**
+     * Diff computed for the request, computing it in case the page was read from cache
+     *
+     * <p>Computation is coalesced and admitted the same way as on cache miss.
+     */
+    private UnifiedDiff getComputedDiff() throws IOException, ServletException {
+
+        if (computedDiff == null) {
+
+            computedDiff = computeDiff(getKey());
+        }
+
+        return computedDiff;
+    }
+
+    /**
+     * Index of the whole diff the page was read from
+     *
+     * <p>Diff computed for the request is read completely once asked for.
+     *
+     * @return null in case there is no diff.
+     */
+    protected HunkIndex getIndex() {
+
+        if (index == null && computed != null) {
+
+            index = computed.getIndex();
+        }
+
+        return index;
+    }
+
+    /**
+     * Plain text response
+     *
+     * @author ogondza
+     */
+    public static class Plain extends DiffResponse {
+
+        public Plain(
+                final ArtifactDifference diff,
+                final StaplerRequest req,
+                final StaplerResponse rsp
+        ) throws IOException, ServletException {
+
+            super(diff, req, rsp);
+        }
+
+        @Override
+        protected DiffPage compute() throws IOException, ServletException {
+
+            try {
+
+                return readPage();
+            } catch(FileNotFoundException ex) {
+
+                rsp.setContentType("text/html");
+                throw new Exception.NotFound("File not found: " + ex.getMessage());
+            }
+        }
+
+        @Override
+        String getOutput() {
+
+            return "plain";
+        }
+
+        public void render(final DiffPage page) throws IOException, ServletException {
+
+            rsp.setContentType("text/plain");
+            rsp.setHeader("Vary", "Accept-Encoding");
+
+            // No content length is known upfront so the container sends
+            // the diff in chunks as its response buffer fills up
+            if (!isGzip()) {
+
+                final Writer out = rsp.getWriter();
+                write(page, out);
+                out.flush();
+                return;
+            }
+
+            rsp.setHeader("Content-Encoding", "gzip");
+            if (transferCompressed()) return;
+
+            final GZIPOutputStream gzip = new GZIPOutputStream(rsp.getOutputStream(), 8192);
+            final Writer out = new OutputStreamWriter(gzip, "UTF-8");
+            write(page, out);
+            out.flush();
+            gzip.finish();
+        }
+
+        private void write(final DiffPage page, final Writer out) throws IOException {
+
+            boolean first = true;
+            while (page.hasNext()) {
+
+                if (!first) {
+
+                    out.write('\n');
+                }
+
+                first = false;
+                out.write(page.next());
+            }
+
+            if (page.isTruncated()) {
+
+                if (!first) {
+
+                    out.write('\n');
+                }
+
+                final String remaining = page.isRemainingKnown()
+                        ? page.getRemaining() + " more hunks"
+                        : "more hunks follow"
+                ;
+                out.write(String.format(
+                        "\\ Diff truncated, %s: ?output=plain&%s", remaining, getNextPageQuery(page)
+                ));
+            }
+        }
+    }
+
+    /**
+     * JSON document with typed hunk lines, see {@link JsonDiff}
+     *
+     * @author ogondza
+     */
+    public static class Json extends DiffResponse {
+
+        public Json(
+                final ArtifactDifference diff,
+                final StaplerRequest req,
+                final StaplerResponse rsp
+        ) throws IOException, ServletException {
+
+            super(diff, req, rsp);
+        }
+
+        @Override
+        protected DiffPage compute() throws IOException, ServletException {
+
+            try {
+
+                return readPage();
+            } catch(FileNotFoundException ex) {
+
+                throw new Exception.NotFound("File not found: " + ex.getMessage());
+            }
+        }
+
+        @Override
+        String getOutput() {
+
+            return "json";
+        }
+
+        public void render(final DiffPage page) throws IOException, ServletException {
+
+            rsp.setContentType("application/json;charset=UTF-8");
+
+            final Writer out = rsp.getWriter();
+            new JsonDiff(page, null) {
+                @Override
+                protected HunkIndex getIndex() {
+
+                    return Json.this.getIndex();
+                }
+            }.write(out, lhsRun.getNumber(), rhsRun.getNumber(), path);
+            out.flush();
+        }
+    }
+
+    /**
+     * Html Response
+     *
+     * @author ogondza
+     */
+    public static class Html extends DiffResponse {
+
+        public Html(
+                final ArtifactDifference diff,
+                final StaplerRequest req,
+                final StaplerResponse rsp
+        ) throws IOException, ServletException {
+
+            super(diff, req, rsp);
+        }
+
+        @Override
+        String getOutput() {
+
+            return "html";
+        }
+
+        public void render(final DiffPage page) throws IOException, ServletException {
+
+            req.setAttribute("lhs", lhsRun);
+            req.setAttribute("rhs", rhsRun);
+            req.setAttribute("diff", new HtmlDiff(page, isCompact(), rsp, hunksFrom));
+            req.setAttribute("page", page);
+            req.setAttribute("outcome", this);
+            req.setAttribute("path", path);
+            req.getView(diff, "html.jelly").forward(req, rsp);
+        }
+
+        /**
+         * Url of the page following the page sent
+         */
+        public String getNextPageUrl(final DiffPage page) {
+
+            return "?output=html&" + getNextPageQuery(page) + (isCompact() ? "&compact" : "");
+        }
+
+        public String getLineClass(final String line) {
+
+            return HtmlDiff.getLineClass(line);
+        }
+
+        /**
+         * Render hunks as single preformatted block instead of element per line
+         */
+        public boolean isCompact() {
+
+            return req.getParameter("compact") != null;
+        }
+
+        /**
+         * Redirect to the builds picked in build selector
+         */
+        @Override
+        protected boolean redirect() throws IOException {
+
+            final int lhsNumber = getNumber("lhs", lhsRun);
+            final int rhsNumber = getNumber("rhs", rhsRun);
+
+            final String oldUrl = getUrl(lhsRun.getNumber(), rhsRun.getNumber());
+            final String newUrl = getUrl(lhsNumber, rhsNumber);
+
+            if (oldUrl.equals(newUrl)) return false;
+
+            rsp.sendRedirect(getRedirectUrl(newUrl));
+            return true;
+        }
+
+        private int getNumber(final String param, Run<?, ?> run) {
+
+            try {
+
+                return Integer.parseInt(req.getParameter(param));
+            } catch (NumberFormatException ex) {
+
+                return run.getNumber();
+            }
+        }
+
+        private String getUrl(final int lhsNumber, final int rhsNumber) {
+
+            return String.format("%s/artifact-diff/%s/", lhsNumber, rhsNumber);
+        }
+
+        private String getRedirectUrl(final String newUrl) {
+
+            return String.format("%s%s%s%s?output=html%s",
+                    Jenkins.getInstance().getRootUrl(),
+                    lhsRun.getParent().getUrl(),
+                    newUrl,
+                    path,
+                    (isCompact() ? "&compact" : "") + getOptionsQuery()
+            );
+        }
+    }
+
+    /**
+     * Side-by-side view loading visible rows from {@link Rows} as it is scrolled
+     *
+     * @author ogondza
+     */
+    public static class SideBySide extends DiffResponse {
+
+        public SideBySide(
+                final ArtifactDifference diff,
+                final StaplerRequest req,
+                final StaplerResponse rsp
+        ) throws IOException, ServletException {
+
+            super(diff, req, rsp);
+        }
+
+        @Override
+        String getOutput() {
+
+            return "sidebyside";
+        }
+
+        public void render(final DiffPage page) throws IOException, ServletException {
+
+            req.setAttribute("lhs", lhsRun);
+            req.setAttribute("rhs", rhsRun);
+            req.setAttribute("rows", getAlignment().getRows());
+            req.setAttribute("outcome", this);
+            req.setAttribute("path", path);
+            req.getView(diff, "sidebyside.jelly").forward(req, rsp);
+        }
+    }
+
+    /**
+     * Slice of side-by-side rows as JSON
+     *
+     * <p>Serves <tt>?output=rows&amp;from=N&amp;count=M</tt> as JSON object
+     * holding total number of <tt>rows</tt> and the <tt>slice</tt> of rows
+     * starting at <tt>from</tt>. Each row has either <tt>left</tt> and
+     * <tt>right</tt> line, any of them can be null, or <tt>both</tt> in case
+     * the line spans the whole row.
+     *
+     * @author ogondza
+     */
+    public static class Rows extends DiffResponse {
+
+        /*package*/ static final int DEFAULT_COUNT = 100;
+        /*package*/ static final int MAX_COUNT = 1000;
+
+        private final int from;
+        private final int count;
+
+        public Rows(
+                final ArtifactDifference diff,
+                final StaplerRequest req,
+                final StaplerResponse rsp
+        ) throws IOException, ServletException {
+
+            super(diff, req, rsp);
+
+            this.from = getInt(req, "from", 0, 0);
+            this.count = Math.min(MAX_COUNT, getInt(req, "count", DEFAULT_COUNT, 1));
+        }
+
+        @Override
+        String getOutput() {
+
+            return "rows";
+        }
+
+        @Override
+        protected DiffPage compute() throws IOException, ServletException {
+
+            try {
+
+                return readPage();
+            } catch(FileNotFoundException ex) {
+
+                throw new Exception.NotFound("File not found: " + ex.getMessage());
+            }
+        }
+
+        public void render(final DiffPage page) throws IOException, ServletException {
+
+            final RowAlignment alignment = getAlignment();
+            final List<RowAlignment.Row> slice = readRows(alignment, from, count);
+
+            rsp.setContentType("application/json;charset=UTF-8");
+
+            final Writer out = rsp.getWriter();
+            write(out, alignment.getRows(), from, slice);
+            out.flush();
+        }
+
+        /*package*/ static void write(
+                final Writer out, final int rows, final int from, final List<RowAlignment.Row> slice
+        ) throws IOException {
+
+            out.write("{\"rows\":" + rows + ",\"from\":" + from + ",\"slice\":[");
+            boolean first = true;
+            for (final RowAlignment.Row row: slice) {
+
+                if (!first) out.write(',');
+                first = false;
+
+                if (row.getLeft() == row.getRight()) {
+
+                    out.write("{\"both\":");
+                    JsonDiff.writeLine(out, row.getLeft());
+                } else {
+
+                    out.write("{\"left\":");
+                    writeSide(out, row.getLeft());
+                    out.write(",\"right\":");
+                    writeSide(out, row.getRight());
+                }
+                out.write('}');
+            }
+            out.write("]}");
+        }
+
+        private static void writeSide(final Writer out, final DiffLine line) throws IOException {
+
+            if (line == null) {
+
+                out.write("null");
+            } else {
+
+                JsonDiff.writeLine(out, line);
+            }
+        }
+    }
+
+    /**
+     * Changed words of requested hunks as JSON
+     *
+     * <p>Serves <tt>?output=words&amp;hunks=N-M</tt> as JSON object holding
+     * <tt>lines</tt> with <tt>old</tt> or <tt>new</tt> line number and changed
+     * character <tt>ranges</tt>, see {@link WordDiff}. Removed lines are paired
+     * with lines added in their place, in order.
+     *
+     * @author ogondza
+     */
+    public static class Words extends DiffResponse {
+
+        public Words(
+                final ArtifactDifference diff,
+                final StaplerRequest req,
+                final StaplerResponse rsp
+        ) throws IOException, ServletException {
+
+            super(diff, req, rsp);
+        }
+
+        @Override
+        String getOutput() {
+
+            return "words";
+        }
+
+        @Override
+        protected DiffPage compute() throws IOException, ServletException {
+
+            try {
+
+                return readPage();
+            } catch(FileNotFoundException ex) {
+
+                throw new Exception.NotFound("File not found: " + ex.getMessage());
+            }
+        }
+
+        public void render(final DiffPage page) throws IOException, ServletException {
+
+            rsp.setContentType("application/json;charset=UTF-8");
+
+            final Writer out = rsp.getWriter();
+            write(out, new DiffLines(page));
+            out.flush();
+        }
+
+        /*package*/ static void write(final Writer out, final Iterator<DiffLine> lines) throws IOException {
+
+            final List<DiffLine> removed = new ArrayList<DiffLine>();
+            final List<DiffLine> added = new ArrayList<DiffLine>();
+
+            out.write("{\"lines\":[");
+            boolean first = true;
+            while (lines.hasNext()) {
+
+                final DiffLine line = lines.next();
+                if (line.getType() == DiffLine.Type.REMOVED && !added.isEmpty()) {
+
+                    first = writeBlock(out, removed, added, first);
+                }
+
+                if (line.getType() == DiffLine.Type.REMOVED) {
+
+                    removed.add(line);
+                } else if (line.getType() == DiffLine.Type.ADDED) {
+
+                    added.add(line);
+                } else {
+
+                    first = writeBlock(out, removed, added, first);
+                }
+            }
+
+            writeBlock(out, removed, added, first);
+            out.write("]}");
+        }
+
+        private static boolean writeBlock(
+                final Writer out, final List<DiffLine> removed, final List<DiffLine> added, boolean first
+        ) throws IOException {
+
+            final int pairs = Math.min(removed.size(), added.size());
+            for (int i = 0; i < pairs; i++) {
+
+                final DiffLine original = removed.get(i);
+                final DiffLine revised = added.get(i);
+
+                // Pairs outside hunks, such as binary diff dump, are not numbered
+                if (original.getOldNumber() == 0 || revised.getNewNumber() == 0) continue;
+
+                final WordDiff words = WordDiff.of(original.getText(), revised.getText());
+                if (words == null) continue;
+
+                if (!first) out.write(',');
+                first = false;
+
+                writeRanges(out, "old", original.getOldNumber(), words.getOriginal());
+                out.write(',');
+                writeRanges(out, "new", revised.getNewNumber(), words.getRevised());
+            }
+
+            removed.clear();
+            added.clear();
+
+            return first;
+        }
+
+        private static void writeRanges(
+                final Writer out, final String side, final int number, final int[] ranges
+        ) throws IOException {
+
+            out.write("{\"" + side + "\":" + number + ",\"ranges\":[");
+            for (int i = 0; i < ranges.length; i++) {
+
+                if (i > 0) out.write(',');
+                out.write(Integer.toString(ranges[i]));
+            }
+            out.write("]}");
         }
     }
 }
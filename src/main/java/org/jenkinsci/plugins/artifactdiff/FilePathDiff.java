@@ -25,17 +25,25 @@ package org.jenkinsci.plugins.artifactdiff;
 
 import hudson.FilePath;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 
-import difflib.DiffUtils;
 import difflib.Patch;
 
 /**
@@ -49,17 +57,71 @@ public class FilePathDiff {
 
     private static final byte CONTEXT = 4;
 
+    private final DiffAlgorithm algorithm;
+    private final LineNormalizer normalizer;
+
+    public FilePathDiff() {
+
+        this(new DiffAlgorithm.Myers());
+    }
+
+    public FilePathDiff(final DiffAlgorithm algorithm) {
+
+        this(algorithm, LineNormalizer.NONE);
+    }
+
+    public FilePathDiff(final DiffAlgorithm algorithm, final LineNormalizer normalizer) {
+
+        if (algorithm == null) throw new IllegalArgumentException("No algorithm provided");
+        if (normalizer == null) throw new IllegalArgumentException("No normalizer provided");
+
+        this.algorithm = algorithm;
+        this.normalizer = normalizer;
+    }
+
     public List<String> getDiff(
             final Entry original, final Entry modified
     ) throws IOException {
 
-        final Patch patch = DiffUtils.diff(original.getLines(), modified.getLines());
+        return diff(original, modified).getLines();
+    }
 
-        return DiffUtils.generateUnifiedDiff(
+    public UnifiedDiff diff(
+            final Entry original, final Entry modified
+    ) throws IOException {
+
+        DiffMetrics.phase(DiffMetrics.Phase.READ);
+
+        final ArchiveDiff archives = ArchiveDiff.compare(original, modified);
+        if (archives != null) return archives;
+
+        // Line diff of binaries is nothing but noise
+        if (original.isBinary() || modified.isBinary()) {
+
+            return BinaryDiff.compare(original, modified);
+        }
+
+        final List<?> originalLines = getComparable(original);
+        final List<?> modifiedLines = getComparable(modified);
+
+        DiffMetrics.phase(DiffMetrics.Phase.DIFF);
+        final Patch patch = algorithm
+                .forSize(originalLines.size() + modifiedLines.size())
+                .diff(originalLines, modifiedLines)
+        ;
+
+        return new UnifiedDiff(
                 original.getPath(), modified.getPath(), original.getLines(), patch, CONTEXT
         );
     }
 
+    private List<?> getComparable(final Entry entry) throws IOException {
+
+        if (normalizer.isNone()) return entry.getComparable();
+
+        return normalizer.getComparable(entry.getLines(), entry.getStamp());
+    }
+
     /**
      * Comparison entry
      *
@@ -71,7 +133,8 @@ public class FilePathDiff {
         private final String path;
 
         private List<String> lines;
-        private boolean missing = false;
+        private Boolean missing;
+        private Boolean binary;
 
         public Entry(final FilePath file, final String path) {
 
@@ -86,19 +149,129 @@ public class FilePathDiff {
 
         public String getPath() throws IOException {
 
-            getLines();
-
-            return missing
+            return isMissing()
                     ? "/dev/null"
                     : path
             ;
         }
 
+        protected boolean isMissing() throws IOException {
+
+            if (missing == null) {
+
+                sniff();
+            }
+
+            return missing;
+        }
+
+        /**
+         * Tell whether the content is not a text
+         */
+        protected boolean isBinary() throws IOException {
+
+            if (binary == null) {
+
+                sniff();
+            }
+
+            return binary;
+        }
+
+        /**
+         * Find out whether the content is missing or binary reading text lines in the same pass
+         */
+        private void sniff() throws IOException {
+
+            final InputStream stream = open();
+            missing = stream == null;
+            if (stream == null) {
+
+                binary = false;
+                lines = Collections.emptyList();
+                return;
+            }
+
+            final BufferedInputStream buffered = new BufferedInputStream(stream, BinaryDiff.HEAD);
+            try {
+
+                buffered.mark(BinaryDiff.HEAD);
+                binary = BinaryDiff.isBinary(buffered, Charset.defaultCharset());
+                if (!binary) {
+
+                    buffered.reset();
+                    lines = readLines(buffered);
+                }
+            } finally {
+
+                buffered.close();
+            }
+        }
+
+        /**
+         * Open the content
+         *
+         * @return <tt>null</tt> in case the file is missing.
+         */
+        protected InputStream open() throws IOException {
+
+            return getStream(file);
+        }
+
+        /**
+         * Open the content as zip archive
+         *
+         * @return <tt>null</tt> unless the content is a zip archive accessible locally.
+         */
+        protected ZipFile openArchive() throws IOException {
+
+            return null;
+        }
+
+        protected long getSize() throws IOException {
+
+            try {
+
+                return file.length();
+            } catch (InterruptedException ex) {
+
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(ex.getMessage());
+            }
+        }
+
+        /**
+         * Identity of the content
+         *
+         * @return <tt>null</tt> in case it can not be determined cheaply.
+         */
+        protected String getStamp() throws IOException {
+
+            return null;
+        }
+
+        /**
+         * Lines to be compared
+         *
+         * <p>Elements are supposed to be equal when lines are and print the
+         * line in <tt>toString()</tt>.
+         */
+        protected List<?> getComparable() throws IOException {
+
+            return getLines();
+        }
+
         public List<String> getLines() throws IOException {
 
             if (lines != null) return lines;
 
-            final InputStream stream = getStream(file);
+            if (binary == null) {
+
+                sniff();
+                if (lines != null) return lines;
+            }
+
+            final InputStream stream = open();
 
             try {
 
@@ -150,4 +323,240 @@ public class FilePathDiff {
             return Collections.unmodifiableList(lines);
         }
     }
+    /**
+     * Comparison entry of local file accessed through memory mapping
+     *
+     * <p>Only lines that appear in the diff are decoded. The file stays mapped
+     * until the entry and the diff computed from it are collected, see
+     * {@link LineIndex}.
+     *
+     * @author ogondza
+     */
+    public static class MappedEntry extends Entry {
+
+        private final File file;
+
+        private LineIndex index;
+        private Boolean binary;
+
+        public MappedEntry(final File file, final String path) {
+
+            super(new FilePath(file), path);
+            this.file = file;
+        }
+
+        /**
+         * Create entry for a local file, memory mapping it when possible
+         */
+        public static Entry of(final File file, final String path) {
+
+            return LineIndex.isSupported(Charset.defaultCharset())
+                    ? new MappedEntry(file, path)
+                    : new Entry(new FilePath(file), path)
+            ;
+        }
+
+        @Override
+        protected boolean isMissing() {
+
+            return !file.isFile();
+        }
+
+        @Override
+        protected boolean isBinary() throws IOException {
+
+            if (binary == null) {
+
+                binary = !isMissing() && FilePathDiff.isBinary(file);
+            }
+
+            return binary;
+        }
+
+        @Override
+        protected InputStream open() throws IOException {
+
+            return isMissing() ? null : new FileInputStream(file);
+        }
+
+        @Override
+        protected long getSize() {
+
+            return file.length();
+        }
+
+        @Override
+        protected String getStamp() {
+
+            return isMissing() ? null : stamp(file);
+        }
+
+        @Override
+        protected ZipFile openArchive() throws IOException {
+
+            if (isMissing() || !isZip(file)) return null;
+
+            try {
+
+                return new ZipFile(file);
+            } catch (ZipException ex) {
+
+                // Corrupted archives are compared as binaries
+                return null;
+            }
+        }
+
+        @Override
+        public List<String> getLines() throws IOException {
+
+            if (isMissing()) return Collections.emptyList();
+
+            return getIndex().getLines();
+        }
+
+        @Override
+        protected List<?> getComparable() throws IOException {
+
+            if (isMissing()) return Collections.emptyList();
+
+            return getIndex().getComparable();
+        }
+
+        private LineIndex getIndex() throws IOException {
+
+            if (index == null) {
+
+                index = LineIndex.map(file, Charset.defaultCharset());
+            }
+
+            return index;
+        }
+    }
+
+    /**
+     * Comparison entry of a file in local zip archive
+     *
+     * <p>Only the entry itself is inflated.
+     *
+     * @author ogondza
+     */
+    public static class ArchiveEntry extends Entry {
+
+        private final File archive;
+        private final String name;
+
+        public ArchiveEntry(final File archive, final String name, final String path) {
+
+            super(new FilePath(archive), path);
+            this.archive = archive;
+            this.name = name;
+        }
+
+        @Override
+        protected InputStream open() throws IOException {
+
+            final ZipFile zip = openZip();
+            if (zip == null) return null;
+
+            final ZipEntry entry = zip.getEntry(name);
+            if (entry == null || entry.isDirectory()) {
+
+                zip.close();
+                return null;
+            }
+
+            // Close the archive together with the entry stream
+            return new FilterInputStream(zip.getInputStream(entry)) {
+                @Override
+                public void close() throws IOException {
+
+                    try {
+
+                        super.close();
+                    } finally {
+
+                        zip.close();
+                    }
+                }
+            };
+        }
+
+        @Override
+        protected long getSize() throws IOException {
+
+            final ZipFile zip = openZip();
+            if (zip == null) return 0;
+
+            try {
+
+                final ZipEntry entry = zip.getEntry(name);
+
+                return entry == null ? 0 : entry.getSize();
+            } finally {
+
+                zip.close();
+            }
+        }
+
+        @Override
+        protected String getStamp() {
+
+            return archive.isFile() ? stamp(archive) + "!" + name : null;
+        }
+
+        private ZipFile openZip() throws IOException {
+
+            if (!archive.isFile() || !isZip(archive)) return null;
+
+            try {
+
+                return new ZipFile(archive);
+            } catch (ZipException ex) {
+
+                LOGGER.info(ex.toString());
+                return null;
+            }
+        }
+    }
+
+    private static String stamp(final File file) {
+
+        return file.getAbsolutePath() + ":" + file.length() + "@" + file.lastModified();
+    }
+
+    /**
+     * Sniff local file without reading it as lines, those are mapped
+     */
+    private static boolean isBinary(final File file) throws IOException {
+
+        final InputStream stream = new FileInputStream(file);
+        try {
+
+            return BinaryDiff.isBinary(stream, Charset.defaultCharset());
+        } finally {
+
+            stream.close();
+        }
+    }
+
+    /**
+     * Tell zip archive by its signature
+     */
+    private static boolean isZip(final File file) throws IOException {
+
+        final InputStream stream = new FileInputStream(file);
+        try {
+
+            final byte[] signature = new byte[4];
+            if (stream.read(signature) != signature.length) return false;
+
+            // Local file header or end of central directory of an empty archive
+            return signature[0] == 'P' && signature[1] == 'K'
+                    && ((signature[2] == 3 && signature[3] == 4) || (signature[2] == 5 && signature[3] == 6))
+            ;
+        } finally {
+
+            stream.close();
+        }
+    }
 }
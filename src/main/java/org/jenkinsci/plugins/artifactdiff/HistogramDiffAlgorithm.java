@@ -0,0 +1,200 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import hudson.Extension;
+
+import java.util.Arrays;
+
+/**
+ * Histogram diff
+ *
+ * <p>Extension of patience diff that anchors on the longest common region
+ * containing the least frequent lines rather than requiring them to be unique.
+ * Lines occurring more than {@link #MAX_CHAIN} times are never used as anchors,
+ * ranges with no other lines in common are compared using Myers algorithm.
+ *
+ * @author ogondza
+ */
+@Extension
+public class HistogramDiffAlgorithm extends DiffAlgorithm {
+
+    public static final String NAME = "histogram";
+
+    /*package*/ static final int MAX_CHAIN = 64;
+
+    @Override
+    public String getName() {
+
+        return NAME;
+    }
+
+    @Override
+    protected void match(final int[] original, final int[] revised, final int[] match) {
+
+        int tokens = 0;
+        for (final int token: original) {
+
+            tokens = Math.max(tokens, token + 1);
+        }
+
+        // Most recent occurrence of every line in the range being matched, -1 when absent
+        final int[] last = new int[tokens];
+        Arrays.fill(last, -1);
+
+        // Ranges still to be matched as aStart, aEnd, bStart, bEnd quadruples
+        int[] ranges = new int[] { 0, original.length, 0, revised.length };
+        int size = ranges.length;
+        while (size > 0) {
+
+            size -= 4;
+            final int[] split = match(
+                    original, ranges[size], ranges[size + 1],
+                    revised, ranges[size + 2], ranges[size + 3],
+                    match, last
+            );
+
+            if (split == null) continue;
+
+            if (size + split.length > ranges.length) {
+
+                ranges = Arrays.copyOf(ranges, 2 * (size + split.length));
+            }
+
+            System.arraycopy(split, 0, ranges, size, split.length);
+            size += split.length;
+        }
+    }
+
+    /**
+     * Match the range on the least frequent common region
+     *
+     * @return Ranges on both sides of the region left to match, null if done.
+     */
+    private int[] match(
+            final int[] a, int aStart, int aEnd,
+            final int[] b, int bStart, int bEnd,
+            final int[] match, final int[] last
+    ) {
+
+        while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+
+            match[aStart++] = bStart++;
+        }
+
+        while (aStart < aEnd && bStart < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+
+            match[--aEnd] = --bEnd;
+        }
+
+        if (aStart == aEnd || bStart == bEnd) return null;
+
+        // Occurrences of every line in a, most recent first
+        final int[] next = new int[aEnd - aStart];
+        final int[] count = new int[aEnd - aStart];
+        for (int i = aEnd - 1; i >= aStart; i--) {
+
+            final int following = last[a[i]];
+            next[i - aStart] = following;
+            count[i - aStart] = following < 0 ? 1 : count[following - aStart] + 1;
+            last[a[i]] = i;
+        }
+
+        int bestA = -1;
+        int bestB = -1;
+        int bestLength = 0;
+        int bestCount = MAX_CHAIN + 1;
+        int bestDistance = Integer.MAX_VALUE;
+
+        for (int j = bStart; j < bEnd;) {
+
+            int nextJ = j + 1;
+
+            final int first = b[j] < last.length ? last[b[j]] : -1;
+            if (first >= 0 && count[first - aStart] <= MAX_CHAIN) {
+
+                for (int i = first; i >= 0; i = next[i - aStart]) {
+
+                    int regionA = i;
+                    int regionB = j;
+                    int regionCount = count[first - aStart];
+                    while (regionA > aStart && regionB > bStart && a[regionA - 1] == b[regionB - 1]) {
+
+                        regionA--;
+                        regionB--;
+                        regionCount = Math.min(regionCount, count[last[a[regionA]] - aStart]);
+                    }
+
+                    int endA = i + 1;
+                    int endB = j + 1;
+                    while (endA < aEnd && endB < bEnd && a[endA] == b[endB]) {
+
+                        regionCount = Math.min(regionCount, count[last[a[endA]] - aStart]);
+                        endA++;
+                        endB++;
+                    }
+
+                    // Equally good regions closer to the middle keep the ranges balanced
+                    final int length = endA - regionA;
+                    final int distance = Math.abs(regionB + endB - bStart - bEnd);
+                    if (regionCount < bestCount || (regionCount == bestCount && (length > bestLength
+                            || (length == bestLength && distance < bestDistance)
+                    ))) {
+
+                        bestA = regionA;
+                        bestB = regionB;
+                        bestLength = length;
+                        bestCount = regionCount;
+                        bestDistance = distance;
+                    }
+
+                    nextJ = Math.max(nextJ, endB);
+                }
+            }
+
+            j = nextJ;
+        }
+
+        for (int i = aStart; i < aEnd; i++) {
+
+            last[a[i]] = -1;
+        }
+
+        if (bestLength == 0) {
+
+            matchMyers(a, aStart, aEnd, b, bStart, bEnd, match);
+            return null;
+        }
+
+        for (int k = 0; k < bestLength; k++) {
+
+            match[bestA + k] = bestB + k;
+        }
+
+        return new int[] {
+                aStart, bestA, bStart, bestB,
+                bestA + bestLength, aEnd, bestB + bestLength, bEnd
+        };
+    }
+}
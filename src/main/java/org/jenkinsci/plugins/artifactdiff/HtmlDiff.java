@@ -0,0 +1,193 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import hudson.Util;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.servlet.ServletResponse;
+
+/**
+ * Render unified diff lines as html fragments
+ *
+ * <p>Every fragment holds one hunk, or its part in case the hunk is large,
+ * with lines escaped and classified once read as {@link DiffLine}s. Response is flushed before next fragment
+ * is rendered so the browser can paint the diff while it is being sent.
+ *
+ * <p>Compact markup wraps the fragment into single <tt>pre</tt> and marks
+ * changed lines by spans rather than emitting <tt>div</tt> per line. Lines
+ * are prefixed with old and new line number gutters unless compact.
+ *
+ * @author ogondza
+ */
+public class HtmlDiff implements Iterator<String> {
+
+    /*package*/ static final int FRAGMENT_LINES = 500;
+
+    private final Iterator<DiffLine> lines;
+    private final boolean compact;
+    private final ServletResponse rsp;
+
+    /** Index of the next hunk header, negative when hunks are not marked */
+    private int hunk;
+
+    private DiffLine pending;
+
+    public HtmlDiff(
+            final Iterator<String> lines, final boolean compact, final ServletResponse rsp
+    ) {
+
+        this(lines, compact, rsp, -1);
+    }
+
+    /**
+     * @param firstHunk Index of the first hunk, hunk headers are marked by
+     * <tt>data-hunk</tt> attribute so its words can be highlighted on demand.
+     */
+    public HtmlDiff(
+            final Iterator<String> lines, final boolean compact, final ServletResponse rsp, final int firstHunk
+    ) {
+
+        this.lines = new DiffLines(lines);
+        this.compact = compact;
+        this.rsp = rsp;
+        this.hunk = firstHunk;
+    }
+
+    /**
+     * Class of line appearing outside of a hunk
+     */
+    public static String getLineClass(final String line) {
+
+        return DiffLine.Type.of(line).getCssClass();
+    }
+
+    public boolean hasNext() {
+
+        return pending != null || lines.hasNext();
+    }
+
+    public String next() {
+
+        if (!hasNext()) throw new NoSuchElementException();
+
+        flush();
+
+        final StringBuilder fragment = new StringBuilder();
+        if (compact) {
+
+            fragment.append("<pre>");
+        }
+
+        int count = 0;
+        while (count < FRAGMENT_LINES && hasNext()) {
+
+            final DiffLine line = pending != null ? pending : lines.next();
+            pending = null;
+
+            // Start new fragment with next hunk
+            if (count > 0 && line.getType() == DiffLine.Type.HUNK) {
+
+                pending = line;
+                break;
+            }
+
+            if (compact && count > 0) {
+
+                fragment.append('\n');
+            }
+
+            appendLine(fragment, line);
+            count++;
+        }
+
+        if (compact) {
+
+            fragment.append("</pre>");
+        }
+
+        return fragment.toString();
+    }
+
+    private void appendLine(final StringBuilder fragment, final DiffLine line) {
+
+        final String lineClass = line.getType().getCssClass();
+        final String text = Util.xmlEscape(line.getLine());
+
+        if (!compact) {
+
+            fragment.append("<div class=\"").append(lineClass).append('"');
+            if (line.getType() == DiffLine.Type.HUNK && hunk >= 0) {
+
+                fragment.append(" data-hunk=\"").append(hunk++).append('"');
+            }
+            fragment.append('>');
+            appendGutter(fragment, line.getOldNumber());
+            appendGutter(fragment, line.getNewNumber());
+            fragment.append(text).append("</div>");
+        } else if ("con".equals(lineClass)) {
+
+            fragment.append(text);
+        } else {
+
+            fragment.append("<span class=\"").append(lineClass).append("\">")
+                    .append(text).append("</span>")
+            ;
+        }
+    }
+
+    private void appendGutter(final StringBuilder fragment, final int number) {
+
+        fragment.append("<span class=\"ln\">");
+        if (number > 0) {
+
+            fragment.append(number);
+        }
+        fragment.append("</span>");
+    }
+
+    /**
+     * Send what was rendered so far
+     */
+    private void flush() {
+
+        if (rsp == null) return;
+
+        try {
+
+            rsp.flushBuffer();
+        } catch (IOException ex) {
+
+            throw new IllegalStateException("Unable to send diff", ex);
+        }
+    }
+
+    public void remove() {
+
+        throw new UnsupportedOperationException();
+    }
+}
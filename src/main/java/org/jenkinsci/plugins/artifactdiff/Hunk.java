@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hunk of unified diff
+ *
+ * @author ogondza
+ */
+public final class Hunk {
+
+    private static final Pattern HEADER = Pattern.compile("^@@ -(\\d+)(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@");
+
+    private final int oldStart;
+    private final int oldCount;
+    private final int newStart;
+    private final int newCount;
+    private final List<DiffLine> lines;
+
+    public Hunk(
+            final int oldStart,
+            final int oldCount,
+            final int newStart,
+            final int newCount,
+            final List<DiffLine> lines
+    ) {
+
+        this.oldStart = oldStart;
+        this.oldCount = oldCount;
+        this.newStart = newStart;
+        this.newCount = newCount;
+        this.lines = lines;
+    }
+
+    /**
+     * Parse hunk header line
+     *
+     * @return Hunk with no lines or null when not a hunk header.
+     */
+    public static Hunk parseHeader(final String header) {
+
+        final Matcher matcher = HEADER.matcher(header);
+        if (!matcher.find()) return null;
+
+        return new Hunk(
+                Integer.parseInt(matcher.group(1)),
+                matcher.group(2) == null ? 1 : Integer.parseInt(matcher.group(2)),
+                Integer.parseInt(matcher.group(3)),
+                matcher.group(4) == null ? 1 : Integer.parseInt(matcher.group(4)),
+                new ArrayList<DiffLine>(0)
+        );
+    }
+
+    public int getOldStart() {
+
+        return oldStart;
+    }
+
+    public int getOldCount() {
+
+        return oldCount;
+    }
+
+    public int getNewStart() {
+
+        return newStart;
+    }
+
+    public int getNewCount() {
+
+        return newCount;
+    }
+
+    public String getHeader() {
+
+        return String.format("@@ -%d,%d +%d,%d @@", oldStart, oldCount, newStart, newCount);
+    }
+
+    /**
+     * Lines of the hunk, header excluded
+     */
+    public List<DiffLine> getLines() {
+
+        return lines;
+    }
+}
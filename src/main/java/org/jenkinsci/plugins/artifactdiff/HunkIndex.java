@@ -0,0 +1,228 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Positions of hunks in unified diff text
+ *
+ * <p>Allows to serve hunk range of a stored diff without parsing the text
+ * preceding it.
+ *
+ * @author ogondza
+ */
+public final class HunkIndex {
+
+    private final UnifiedDiff.Type type;
+    private final long[] offsets;
+    private final int size;
+    private final long lines;
+    private final long bytes;
+    private final long added;
+    private final long removed;
+
+    private HunkIndex(
+            final UnifiedDiff.Type type,
+            final long[] offsets,
+            final int size,
+            final long lines,
+            final long bytes,
+            final long added,
+            final long removed
+    ) {
+
+        this.type = type;
+        this.offsets = offsets;
+        this.size = size;
+        this.lines = lines;
+        this.bytes = bytes;
+        this.added = added;
+        this.removed = removed;
+    }
+
+    /**
+     * Index text diff read from the reader
+     */
+    public static HunkIndex of(final Reader reader) throws IOException {
+
+        return of(reader, UnifiedDiff.Type.TEXT);
+    }
+
+    /**
+     * Index diff read from the reader
+     */
+    public static HunkIndex of(final Reader reader, final UnifiedDiff.Type type) throws IOException {
+
+        final Builder builder = new Builder(type);
+        final char[] buffer = new char[8192];
+
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+
+            builder.append(buffer, 0, read);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Kind of content the diff was computed from
+     */
+    public UnifiedDiff.Type getType() {
+
+        return type;
+    }
+
+    /**
+     * Number of hunks
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * Number of lines of the whole diff
+     */
+    public long getLines() {
+
+        return lines;
+    }
+
+    /**
+     * UTF-8 encoded length of the whole diff
+     */
+    public long getBytes() {
+
+        return bytes;
+    }
+
+    /**
+     * Number of lines added by hunks
+     */
+    public long getAdded() {
+
+        return added;
+    }
+
+    /**
+     * Number of lines removed by hunks
+     */
+    public long getRemoved() {
+
+        return removed;
+    }
+
+    /**
+     * Character offset of the hunk header line
+     */
+    public long getOffset(final int hunk) {
+
+        if (hunk < 0 || hunk >= size) throw new IndexOutOfBoundsException(
+                String.format("Hunk %d of %d", hunk, size)
+        );
+
+        return offsets[hunk];
+    }
+
+    /**
+     * Collect hunk offsets of diff text as it is being written
+     *
+     * @author ogondza
+     */
+    public static final class Builder {
+
+        private final UnifiedDiff.Type type;
+        private long[] offsets = new long[16];
+        private int size = 0;
+
+        private long position = 0;
+        private long lines = 0;
+        private long bytes = 0;
+        private long added = 0;
+        private long removed = 0;
+        private long lineStart = 0;
+        private int column = 0;
+        private char first;
+
+        public Builder(final UnifiedDiff.Type type) {
+
+            this.type = type;
+        }
+
+        public void append(final char[] cbuf, final int off, final int len) {
+
+            for (int i = off; i < off + len; i++) {
+
+                final char c = cbuf[i];
+
+                if (column == 0) {
+
+                    lineStart = position;
+                    first = c;
+
+                    // File header precedes the first hunk
+                    if (size > 0) {
+
+                        if (c == '+') added++;
+                        if (c == '-') removed++;
+                    }
+                } else if (column == 1 && first == '@' && c == '@') {
+
+                    add(lineStart);
+                }
+
+                if (c == '\n') {
+
+                    lines++;
+                }
+
+                column = c == '\n' ? 0 : column + 1;
+                position++;
+                bytes += c < 0x80 ? 1 : (c < 0x800 ? 2 : 3);
+            }
+        }
+
+        private void add(final long offset) {
+
+            if (size == offsets.length) {
+
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+
+            offsets[size++] = offset;
+        }
+
+        public HunkIndex build() {
+
+            // Last line is not terminated
+            return new HunkIndex(
+                    type, Arrays.copyOf(offsets, size), size, position == 0 ? 0 : lines + 1, bytes, added, removed
+            );
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Diff lines indexed as they are read
+ *
+ * <p>Lines are passed to the cache recorder on the way, so a single
+ * formatting pass both serves the response and fills the cache. Recording
+ * is committed once all lines were read and discarded when closed sooner.
+ *
+ * @author ogondza
+ */
+public final class IndexedLines implements Iterator<String>, Closeable {
+
+    private static final char[] NEWLINE = new char[] {'\n'};
+
+    private Iterator<String> lines;
+    private final HunkIndex.Builder builder;
+    private DiffCache.Recorder recorder;
+
+    private boolean first = true;
+    private HunkIndex index;
+
+    /**
+     * @param type Kind of content the lines were computed from.
+     * @param recorder Recorder to write the lines to, null not to record them.
+     */
+    public IndexedLines(
+            final Iterator<String> lines, final UnifiedDiff.Type type, final DiffCache.Recorder recorder
+    ) {
+
+        this.lines = lines;
+        this.builder = new HunkIndex.Builder(type);
+        this.recorder = recorder;
+    }
+
+    public boolean hasNext() {
+
+        if (lines.hasNext()) return true;
+
+        if (index == null) {
+
+            // Let the diff and the artifacts it maps go
+            lines = Collections.<String>emptyList().iterator();
+
+            index = builder.build();
+            if (recorder != null) {
+
+                recorder.commit();
+                recorder = null;
+            }
+        }
+
+        return false;
+    }
+
+    public String next() {
+
+        if (!hasNext()) throw new NoSuchElementException();
+
+        final String line = lines.next();
+        final char[] chars = line.toCharArray();
+        if (!first) {
+
+            append(NEWLINE);
+        }
+
+        first = false;
+        append(chars);
+
+        return line;
+    }
+
+    private void append(final char[] chars) {
+
+        builder.append(chars, 0, chars.length);
+        if (recorder == null) return;
+
+        try {
+
+            recorder.write(chars, 0, chars.length);
+        } catch (IOException ex) {
+
+            // Recorder passes lines to no writer, it handles failures of the cache itself
+            throw new AssertionError(ex);
+        }
+    }
+
+    /**
+     * Index of the whole diff
+     *
+     * <p>Lines not read yet are read, indexed and recorded.
+     */
+    public HunkIndex getIndex() {
+
+        while (hasNext()) {
+
+            next();
+        }
+
+        return index;
+    }
+
+    public void remove() {
+
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Discard the recording unless all lines were read
+     */
+    public void close() {
+
+        if (recorder != null) {
+
+            recorder.close();
+            recorder = null;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Write diff page as JSON document
+ *
+ * <p>Lines are written as they are read from the page so the memory needed
+ * does not depend on the diff size. Lines preceding the first hunk, such as
+ * binary or archive summary, are written as notes. Properties of the whole
+ * diff are written last as diff being computed is indexed while it is sent.
+ *
+ * <pre>
+ * {"lhs":1,"rhs":2,"path":"...",
+ *  "notes":[],
+ *  "hunks":[{"oldStart":1,"oldCount":1,"newStart":1,"newCount":2,"lines":[
+ *      {"type":"context","text":"...","old":1,"new":1},{"type":"added","text":"...","new":2}
+ *  ]}],
+ *  "truncated":false,
+ *  "identical":false,"binary":false,"archive":false,
+ *  "stats":{"hunks":1,"added":1,"removed":0}}
+ * </pre>
+ *
+ * @author ogondza
+ */
+public class JsonDiff {
+
+    private final DiffLines lines;
+    private final DiffPage page;
+    private final HunkIndex index;
+
+    private DiffLine pending;
+
+    /**
+     * @param index Index of the whole diff the page was read from, null for no diff.
+     */
+    public JsonDiff(final DiffPage page, final HunkIndex index) {
+
+        this.lines = new DiffLines(page);
+        this.page = page;
+        this.index = index;
+    }
+
+    public void write(
+            final Writer out, final int lhs, final int rhs, final String path
+    ) throws IOException {
+
+        // Skip file header
+        while (peek() != null && (isType(DiffLine.Type.OLD_FILE) || isType(DiffLine.Type.NEW_FILE))) {
+
+            pending = null;
+        }
+
+        final boolean empty = peek() == null;
+
+        out.write("{\"lhs\":" + lhs + ",\"rhs\":" + rhs + ",\"path\":");
+        quote(out, path);
+
+        out.write(",\"notes\":[");
+        boolean first = true;
+        while (peek() != null && !isType(DiffLine.Type.HUNK)) {
+
+            if (!first) out.write(',');
+            first = false;
+
+            writeLine(out, pending);
+            pending = null;
+        }
+
+        out.write("],\"hunks\":[");
+        boolean open = false;
+        while (peek() != null) {
+
+            final Hunk hunk = isType(DiffLine.Type.HUNK)
+                    ? Hunk.parseHeader(pending.getText())
+                    : null
+            ;
+
+            if (hunk != null) {
+
+                if (open) out.write("]},");
+                open = true;
+                first = true;
+
+                writeHunk(out, hunk);
+            } else if (open) {
+
+                // Malformed header is kept as a line of the hunk
+                if (!first) out.write(',');
+                first = false;
+
+                writeLine(out, pending);
+            }
+
+            pending = null;
+        }
+
+        if (open) out.write("]}");
+        out.write("],\"truncated\":" + page.isTruncated());
+        if (page.isTruncated()) {
+
+            out.write(",\"next\":" + page.getNext());
+        }
+
+        final HunkIndex index = getIndex();
+        out.write(",\"identical\":" + (empty && page.getHunks() == 0));
+        out.write(",\"binary\":" + isType(index, UnifiedDiff.Type.BINARY));
+        out.write(",\"archive\":" + isType(index, UnifiedDiff.Type.ARCHIVE));
+        out.write(String.format(",\"stats\":{\"hunks\":%d,\"added\":%d,\"removed\":%d}",
+                page.getHunks(),
+                index == null ? 0 : index.getAdded(),
+                index == null ? 0 : index.getRemoved()
+        ));
+        out.write('}');
+    }
+
+    /**
+     * Index of the whole diff, asked for once the page was written
+     */
+    protected HunkIndex getIndex() {
+
+        return index;
+    }
+
+    private DiffLine peek() {
+
+        if (pending == null && lines.hasNext()) {
+
+            pending = lines.next();
+        }
+
+        return pending;
+    }
+
+    private boolean isType(final DiffLine.Type type) {
+
+        return pending.getType() == type;
+    }
+
+    private static boolean isType(final HunkIndex index, final UnifiedDiff.Type type) {
+
+        return index != null && index.getType() == type;
+    }
+
+    private void writeHunk(final Writer out, final Hunk hunk) throws IOException {
+
+        out.write(String.format("{\"oldStart\":%d,\"oldCount\":%d,\"newStart\":%d,\"newCount\":%d,\"lines\":[",
+                hunk.getOldStart(), hunk.getOldCount(), hunk.getNewStart(), hunk.getNewCount()
+        ));
+    }
+
+    /*package*/ static void writeLine(final Writer out, final DiffLine line) throws IOException {
+
+        out.write("{\"type\":\"");
+        out.write(line.getType().name().toLowerCase(Locale.ENGLISH));
+        out.write("\",\"text\":");
+        quote(out, line.getText());
+
+        if (line.getOldNumber() > 0) {
+
+            out.write(",\"old\":" + line.getOldNumber());
+        }
+
+        if (line.getNewNumber() > 0) {
+
+            out.write(",\"new\":" + line.getNewNumber());
+        }
+
+        out.write('}');
+    }
+
+    /*package*/ static void quote(final Writer out, final String text) throws IOException {
+
+        out.write('"');
+        for (int i = 0; i < text.length(); i++) {
+
+            final char c = text.charAt(i);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lines of memory-mapped file
+ *
+ * <p>File content is never copied to heap as a whole. Line boundaries and
+ * hashes are indexed in primitive arrays and line strings are only decoded
+ * when requested, so heap use is proportional to number of lines rather than
+ * to file size. Lines are terminated the same way as by
+ * {@link java.io.BufferedReader#readLine()}, so the charset is required to
+ * encode CR and LF as single ASCII bytes.
+ *
+ * <p>Java offers no way to unmap the file explicitly, the mapping is released
+ * once the index is garbage collected. Until then the file can not be
+ * deleted on Windows, so the index is not supposed to outlive the request
+ * that diffs the file. Diff cache keeps formatted text only.
+ *
+ * @author ogondza
+ */
+public final class LineIndex {
+
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final MappedByteBuffer[] segments;
+    private final Charset charset;
+
+    private long[] starts;
+    private int[] lengths;
+    private int[] hashes;
+    private int size = 0;
+
+    private LineIndex(final MappedByteBuffer[] segments, final long length, final Charset charset) {
+
+        this.segments = segments;
+        this.charset = charset;
+
+        final int estimate = (int) Math.min(1 << 16, length / 64) + 16;
+        this.starts = new long[estimate];
+        this.lengths = new int[estimate];
+        this.hashes = new int[estimate];
+
+        index(length);
+    }
+
+    /**
+     * Map the file and index its lines
+     */
+    public static LineIndex map(final File file, final Charset charset) throws IOException {
+
+        if (!isSupported(charset)) throw new IllegalArgumentException(
+                "Line terminators are not single bytes in " + charset
+        );
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+
+            final FileChannel channel = raf.getChannel();
+            final long length = channel.size();
+
+            final MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; i++) {
+
+                final long position = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(
+                        FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, length - position)
+                );
+            }
+
+            // Mapping remains valid after the channel is closed
+            return new LineIndex(segments, length, charset);
+        } finally {
+
+            raf.close();
+        }
+    }
+
+    /**
+     * Determine whether lines encoded in charset can be indexed
+     */
+    public static boolean isSupported(final Charset charset) {
+
+        return Arrays.equals("\r\n".getBytes(charset), new byte[] {'\r', '\n'});
+    }
+
+    private void index(final long length) {
+
+        long start = 0;
+        int hash = 0;
+        for (long position = 0; position < length; position++) {
+
+            final byte b = get(position);
+            if (b != '\n' && b != '\r') {
+
+                hash = 31 * hash + b;
+                continue;
+            }
+
+            add(start, position, hash);
+            hash = 0;
+
+            if (b == '\r' && position + 1 < length && get(position + 1) == '\n') {
+
+                position++;
+            }
+
+            start = position + 1;
+        }
+
+        // Last line not terminated
+        if (start < length) {
+
+            add(start, length, hash);
+        }
+    }
+
+    private void add(final long start, final long end, final int hash) {
+
+        if (end - start > Integer.MAX_VALUE) throw new IllegalStateException(
+                "Line too long at offset " + start
+        );
+
+        if (size == starts.length) {
+
+            final int capacity = (int) Math.min(Integer.MAX_VALUE - 8, 2L * size);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+
+        starts[size] = start;
+        lengths[size] = (int) (end - start);
+        hashes[size] = hash;
+        size++;
+    }
+
+    private byte get(final long position) {
+
+        return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & SEGMENT_MASK));
+    }
+
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * Hash of line content
+     */
+    public int getHash(final int line) {
+
+        return hashes[line];
+    }
+
+    /**
+     * Decode the line
+     */
+    public String getLine(final int line) {
+
+        final byte[] bytes = new byte[lengths[line]];
+        final long start = starts[line];
+        for (int i = 0; i < bytes.length; i++) {
+
+            bytes[i] = get(start + i);
+        }
+
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Compare line content without decoding it
+     */
+    public boolean equals(final int line, final LineIndex other, final int otherLine) {
+
+        if (hashes[line] != other.hashes[otherLine]) return false;
+        if (lengths[line] != other.lengths[otherLine]) return false;
+        if (!charset.equals(other.charset)) return getLine(line).equals(other.getLine(otherLine));
+
+        final long start = starts[line];
+        final long otherStart = other.starts[otherLine];
+        for (int i = 0; i < lengths[line]; i++) {
+
+            if (get(start + i) != other.get(otherStart + i)) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Decoded lines
+     */
+    public List<String> getLines() {
+
+        return new AbstractList<String>() {
+
+            @Override
+            public String get(final int index) {
+
+                return getLine(checkIndex(index));
+            }
+
+            @Override
+            public int size() {
+
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Lines to be compared by content
+     *
+     * <p>Elements are lightweight handles created on demand, equal in case
+     * the lines they refer to are equal. Line is decoded by <tt>toString()</tt>.
+     */
+    public List<Line> getComparable() {
+
+        return new AbstractList<Line>() {
+
+            @Override
+            public Line get(final int index) {
+
+                return new Line(checkIndex(index));
+            }
+
+            @Override
+            public int size() {
+
+                return size;
+            }
+        };
+    }
+
+    private int checkIndex(final int index) {
+
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(
+                String.format("Line %d of %d", index, size)
+        );
+
+        return index;
+    }
+
+    /**
+     * Reference to indexed line
+     *
+     * @author ogondza
+     */
+    public final class Line {
+
+        private final int line;
+
+        private Line(final int line) {
+
+            this.line = line;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+
+            if (!(other instanceof Line)) return false;
+
+            final Line that = (Line) other;
+
+            return LineIndex.this.equals(line, that.getIndex(), that.line);
+        }
+
+        private LineIndex getIndex() {
+
+            return LineIndex.this;
+        }
+
+        @Override
+        public int hashCode() {
+
+            return hashes[line];
+        }
+
+        @Override
+        public String toString() {
+
+            return getLine(line);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.util.List;
+
+/**
+ * Assign dense numbers to distinct lines
+ *
+ * <p>Open addressing hash table keeping the first occurrence of every line,
+ * equal lines are numbered the same. Lines are compared by
+ * <tt>equals</tt> only when their hashes match.
+ *
+ * @author ogondza
+ */
+public final class LineInterner {
+
+    private Object[] lines;
+    private int[] hashes;
+    private int[] ids;
+    private int mask;
+    private int size = 0;
+
+    public LineInterner(final int expected) {
+
+        int capacity = 16;
+        while (capacity < 2L * expected && capacity < 1 << 30) {
+
+            capacity <<= 1;
+        }
+
+        allocate(capacity);
+    }
+
+    private void allocate(final int capacity) {
+
+        lines = new Object[capacity];
+        hashes = new int[capacity];
+        ids = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Number of distinct lines seen
+     */
+    public int size() {
+
+        return size;
+    }
+
+    public int intern(final Object line) {
+
+        final int hash = spread(line.hashCode());
+
+        int slot = hash & mask;
+        while (lines[slot] != null) {
+
+            if (hashes[slot] == hash && lines[slot].equals(line)) return ids[slot];
+
+            slot = (slot + 1) & mask;
+        }
+
+        lines[slot] = line;
+        hashes[slot] = hash;
+        ids[slot] = size;
+
+        if (++size > lines.length / 2) {
+
+            rehash();
+        }
+
+        return size - 1;
+    }
+
+    public int[] intern(final List<?> lines) {
+
+        final int[] tokens = new int[lines.size()];
+        for (int i = 0; i < tokens.length; i++) {
+
+            tokens[i] = intern(lines.get(i));
+        }
+
+        return tokens;
+    }
+
+    private void rehash() {
+
+        final Object[] oldLines = lines;
+        final int[] oldHashes = hashes;
+        final int[] oldIds = ids;
+
+        allocate(oldLines.length * 2);
+
+        for (int i = 0; i < oldLines.length; i++) {
+
+            if (oldLines[i] == null) continue;
+
+            int slot = oldHashes[i] & mask;
+            while (lines[slot] != null) {
+
+                slot = (slot + 1) & mask;
+            }
+
+            lines[slot] = oldLines[i];
+            hashes[slot] = oldHashes[i];
+            ids[slot] = oldIds[i];
+        }
+    }
+
+    private static int spread(final int hash) {
+
+        final int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+/**
+ * Make lines that differ in insignificant ways compare equal
+ *
+ * <p>Options are requested by <tt>ignore</tt> parameter as comma separated
+ * list of <tt>whitespace</tt> (changes in amount of whitespace and trailing
+ * whitespace), <tt>case</tt> or name of a pattern configured by
+ * <tt>org.jenkinsci.plugins.artifactdiff.LineNormalizer.pattern.NAME</tt>
+ * property. Fragments matching any <tt>strip</tt> parameter are removed as
+ * well. Without these parameters options are chosen according to artifact
+ * path using <tt>org.jenkinsci.plugins.artifactdiff.LineNormalizer.rules</tt>
+ * property, comma separated list of <tt>glob=option;option</tt> pairs, first
+ * match wins.
+ *
+ * <p>Lines are compared by 64-bit hash of their normalized form while the
+ * original text is presented, normalized forms are compared only for lines
+ * with the same hash. Hashes are cached per artifact, bounded by their total
+ * number.
+ *
+ * @author ogondza
+ */
+public final class LineNormalizer {
+
+    private static final Logger LOGGER = Logger.getLogger(LineNormalizer.class.getName());
+
+    /*package*/ static final String RULES = System.getProperty(
+            LineNormalizer.class.getName() + ".rules", ""
+    );
+
+    /**
+     * Number of line hashes cached for all artifacts
+     */
+    /*package*/ static final long HASHES_LIMIT = Long.getLong(
+            LineNormalizer.class.getName() + ".hashesLimit", 4L * 1024 * 1024
+    );
+
+    /** Leave lines as they are */
+    public static final LineNormalizer NONE = new LineNormalizer(
+            false, false, Collections.<Pattern>emptyList(), ""
+    );
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final LinkedHashMap<String, long[]> hashes = new LinkedHashMap<String, long[]>(16, 0.75f, true);
+
+    /** Total length of cached hash arrays, guarded by {@link #hashes} */
+    private static long cachedHashes = 0;
+
+    private final boolean whitespace;
+    private final boolean ignoreCase;
+    private final List<Pattern> strip;
+    private final String variant;
+
+    private LineNormalizer(
+            final boolean whitespace, final boolean ignoreCase, final List<Pattern> strip, final String variant
+    ) {
+
+        this.whitespace = whitespace;
+        this.ignoreCase = ignoreCase;
+        this.strip = strip;
+        this.variant = variant;
+    }
+
+    /**
+     * Create normalizer from option names and patterns to strip
+     *
+     * @throws IllegalArgumentException in case of unknown option or malformed pattern.
+     */
+    public static LineNormalizer of(final List<String> options, final List<String> strip) {
+
+        boolean whitespace = false;
+        boolean ignoreCase = false;
+        final List<String> expressions = new ArrayList<String>();
+        for (final String option: options) {
+
+            if (option.isEmpty()) continue;
+
+            if (option.equals("whitespace")) {
+
+                whitespace = true;
+            } else if (option.equals("case")) {
+
+                ignoreCase = true;
+            } else {
+
+                final String pattern = System.getProperty(LineNormalizer.class.getName() + ".pattern." + option);
+                if (pattern == null) throw new IllegalArgumentException("No such normalization: " + option);
+
+                expressions.add(pattern);
+            }
+        }
+
+        for (final String expression: strip) {
+
+            if (!expression.isEmpty()) expressions.add(expression);
+        }
+
+        if (!whitespace && !ignoreCase && expressions.isEmpty()) return NONE;
+
+        final List<Pattern> patterns = new ArrayList<Pattern>(expressions.size());
+        final StringBuilder variant = new StringBuilder("normalize");
+        if (whitespace) variant.append(":whitespace");
+        if (ignoreCase) variant.append(":case");
+        for (final String expression: expressions) {
+
+            try {
+
+                patterns.add(Pattern.compile(expression));
+            } catch (PatternSyntaxException ex) {
+
+                throw new IllegalArgumentException("Malformed pattern: " + expression, ex);
+            }
+
+            variant.append(":strip=").append(expression.length()).append('/').append(expression);
+        }
+
+        return new LineNormalizer(whitespace, ignoreCase, Collections.unmodifiableList(patterns), variant.toString());
+    }
+
+    /**
+     * Normalizer configured for the path
+     */
+    public static LineNormalizer forPath(final String path) {
+
+        for (final Map.Entry<String, String> rule: DiffAlgorithm.parseRules(RULES).entrySet()) {
+
+            if (!SelectorUtils.matchPath(rule.getKey(), path)) continue;
+
+            final List<String> options = new ArrayList<String>();
+            for (final String option: rule.getValue().split(";")) {
+
+                options.add(option.trim());
+            }
+
+            try {
+
+                return of(options, Collections.<String>emptyList());
+            } catch (IllegalArgumentException ex) {
+
+                LOGGER.warning("Invalid normalization rule for " + rule.getKey() + ": " + ex.getMessage());
+                return NONE;
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Whether lines are left as they are
+     */
+    public boolean isNone() {
+
+        return this == NONE;
+    }
+
+    /**
+     * Options identifying the normalization, empty for {@link #NONE}
+     */
+    public String getVariant() {
+
+        return variant;
+    }
+
+    public String normalize(final String line) {
+
+        String normalized = line;
+        for (final Pattern pattern: strip) {
+
+            normalized = pattern.matcher(normalized).replaceAll("");
+        }
+
+        if (whitespace) {
+
+            normalized = trimEnd(WHITESPACE.matcher(normalized).replaceAll(" "));
+        }
+
+        if (ignoreCase) {
+
+            normalized = normalized.toLowerCase(Locale.ENGLISH);
+        }
+
+        return normalized;
+    }
+
+    /**
+     * Lines to be compared by normalized hash
+     *
+     * <p>Elements print the original line in <tt>toString()</tt>.
+     *
+     * @param stamp Identity of artifact content to cache the hashes for, null not to cache them.
+     */
+    public List<Line> getComparable(final List<String> lines, final String stamp) {
+
+        final long[] lineHashes = getHashes(lines, stamp);
+        return new AbstractList<Line>() {
+
+            @Override
+            public Line get(final int index) {
+
+                return new Line(LineNormalizer.this, lines, lineHashes, index);
+            }
+
+            @Override
+            public int size() {
+
+                return lineHashes.length;
+            }
+        };
+    }
+
+    private long[] getHashes(final List<String> lines, final String stamp) {
+
+        final String key = stamp == null ? null : variant + "\n" + stamp;
+        if (key != null) {
+
+            synchronized (hashes) {
+
+                final long[] cached = hashes.get(key);
+                if (cached != null && cached.length == lines.size()) return cached;
+            }
+        }
+
+        final long[] computed = new long[lines.size()];
+        for (int i = 0; i < computed.length; i++) {
+
+            computed[i] = hash(normalize(lines.get(i)));
+        }
+
+        if (key != null && computed.length <= HASHES_LIMIT) {
+
+            cache(key, computed);
+        }
+
+        return computed;
+    }
+
+    private static void cache(final String key, final long[] computed) {
+
+        synchronized (hashes) {
+
+            final long[] old = hashes.put(key, computed);
+            if (old != null) {
+
+                cachedHashes -= old.length;
+            }
+
+            cachedHashes += computed.length;
+
+            final Iterator<long[]> it = hashes.values().iterator();
+            while (cachedHashes > HASHES_LIMIT && it.hasNext()) {
+
+                cachedHashes -= it.next().length;
+                it.remove();
+            }
+        }
+    }
+
+    /*package*/ static long getCachedHashes() {
+
+        synchronized (hashes) {
+
+            return cachedHashes;
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of string characters
+     */
+    /*package*/ static long hash(final String line) {
+
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < line.length(); i++) {
+
+            hash ^= line.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    private static String trimEnd(final String line) {
+
+        int end = line.length();
+        while (end > 0 && Character.isWhitespace(line.charAt(end - 1))) {
+
+            end--;
+        }
+
+        return line.substring(0, end);
+    }
+
+    @Override
+    public String toString() {
+
+        return isNone() ? "none" : variant;
+    }
+
+    /**
+     * Line compared by its normalized hash
+     *
+     * @author ogondza
+     */
+    public static final class Line {
+
+        private final LineNormalizer normalizer;
+        private final List<String> lines;
+        private final long[] hashes;
+        private final int line;
+
+        private Line(
+                final LineNormalizer normalizer, final List<String> lines, final long[] hashes, final int line
+        ) {
+
+            this.normalizer = normalizer;
+            this.lines = lines;
+            this.hashes = hashes;
+            this.line = line;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+
+            if (!(other instanceof Line)) return false;
+
+            final Line that = (Line) other;
+
+            if (hashes[line] != that.hashes[that.line]) return false;
+
+            // Tell hash collisions apart, identical lines are equal whatever the normalization
+            final String text = lines.get(line);
+            final String thatText = that.lines.get(that.line);
+
+            return text.equals(thatText)
+                    || normalizer.normalize(text).equals(that.normalizer.normalize(thatText))
+            ;
+        }
+
+        @Override
+        public int hashCode() {
+
+            final long hash = hashes[line];
+            return (int) (hash ^ (hash >>> 32));
+        }
+
+        @Override
+        public String toString() {
+
+            return lines.get(line);
+        }
+    }
+}
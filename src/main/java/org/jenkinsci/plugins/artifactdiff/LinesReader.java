@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.io.Reader;
+import java.util.Iterator;
+
+/**
+ * Read lines separated by newlines as text
+ *
+ * <p>Lines are obtained one at a time so the text is never held whole.
+ *
+ * @author ogondza
+ */
+public final class LinesReader extends Reader {
+
+    private final Iterator<String> lines;
+
+    private String line;
+    private int position;
+    private boolean first = true;
+
+    public LinesReader(final Iterator<String> lines) {
+
+        this.lines = lines;
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) {
+
+        if (len == 0) return 0;
+
+        int read = 0;
+        while (read < len) {
+
+            if (line == null || position == line.length()) {
+
+                if (!lines.hasNext()) break;
+
+                line = lines.next();
+                position = 0;
+                if (!first) {
+
+                    cbuf[off + read++] = '\n';
+                }
+
+                first = false;
+                continue;
+            }
+
+            final int count = Math.min(len - read, line.length() - position);
+            line.getChars(position, position + count, cbuf, off + read);
+            position += count;
+            read += count;
+        }
+
+        return read == 0 ? -1 : read;
+    }
+
+    @Override
+    public void close() {
+
+        line = null;
+    }
+}
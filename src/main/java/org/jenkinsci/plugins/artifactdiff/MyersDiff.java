@@ -0,0 +1,395 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.util.Arrays;
+
+/**
+ * Myers diff of token sequences
+ *
+ * <p>Shortest edit script is traced the same way java-diff-utils does, so the
+ * edits are identical to {@link difflib.DiffUtils#diff}, as long as the trace
+ * of <tt>D<sup>2</sup>/2</tt> entries fits into {@link #TRACE_LIMIT}. Larger
+ * problems are solved by linear space divide and conquer variant producing
+ * edit script of the same length. Working arrays are reused by thread so
+ * nothing is allocated per compared line.
+ *
+ * @author ogondza
+ */
+public final class MyersDiff {
+
+    /*package*/ static final int TRACE_LIMIT = Integer.getInteger(
+            MyersDiff.class.getName() + ".traceLimit", 4 * 1024 * 1024
+    );
+
+    /**
+     * Largest buffer kept for reuse by a thread
+     */
+    private static final int RETAIN_LIMIT = 1024 * 1024;
+
+    private static final ThreadLocal<MyersDiff> buffers = new ThreadLocal<MyersDiff>() {
+        @Override
+        protected MyersDiff initialValue() {
+
+            return new MyersDiff();
+        }
+    };
+
+    private int[] trace = new int[0];
+    private int[] forward = new int[0];
+    private int[] backward = new int[0];
+    private int[] snakes = new int[0];
+
+    private MyersDiff() {}
+
+    /**
+     * Receiver of edits in order of their positions
+     *
+     * @author ogondza
+     */
+    public interface Callback {
+
+        /**
+         * Original range <tt>[originalStart, originalEnd)</tt> was replaced by
+         * revised range <tt>[revisedStart, revisedEnd)</tt>, either of them
+         * can be empty.
+         */
+        void edit(int originalStart, int originalEnd, int revisedStart, int revisedEnd);
+    }
+
+    /**
+     * Report edits transforming original range into revised one
+     */
+    public static void diff(
+            final int[] a, final int aStart, final int aEnd,
+            final int[] b, final int bStart, final int bEnd,
+            final Callback callback
+    ) {
+
+        diff(a, aStart, aEnd, b, bStart, bEnd, callback, TRACE_LIMIT);
+    }
+
+    /*package*/ static void diff(
+            final int[] a, final int aStart, final int aEnd,
+            final int[] b, final int bStart, final int bEnd,
+            final Callback callback, final int traceLimit
+    ) {
+
+        final MyersDiff diff = buffers.get();
+        try {
+
+            final Emitter emitter = new Emitter(aStart, bStart, callback);
+            if (!diff.traced(a, aStart, aEnd, b, bStart, bEnd, emitter, traceLimit)) {
+
+                diff.linear(a, aStart, aEnd, b, bStart, bEnd, emitter);
+            }
+
+            emitter.end(aEnd, bEnd);
+        } finally {
+
+            diff.release();
+        }
+    }
+
+    /**
+     * Greedy forward search recording furthest reaching paths
+     *
+     * @return false in case the trace does not fit the limit
+     */
+    private boolean traced(
+            final int[] a, final int aStart, final int aEnd,
+            final int[] b, final int bStart, final int bEnd,
+            final Emitter emitter, final int traceLimit
+    ) {
+
+        final int n = aEnd - aStart;
+        final int m = bEnd - bStart;
+
+        // Furthest x of diagonal k in round d is stored at d(d+1)/2 + (k+d)/2
+        for (int d = 0, base = 0; d <= n + m; base += ++d) {
+
+            if ((long) base + d + 1 > traceLimit) return false;
+
+            trace = ensure(trace, base + d + 1);
+
+            final int previous = base - d;
+            for (int k = -d; k <= d; k += 2) {
+
+                int x;
+                if (d == 0) {
+
+                    x = 0;
+                } else if (k == -d || (k != d && trace[previous + (k - 1 + d - 1) / 2] < trace[previous + (k + 1 + d - 1) / 2])) {
+
+                    x = trace[previous + (k + 1 + d - 1) / 2];
+                } else {
+
+                    x = trace[previous + (k - 1 + d - 1) / 2] + 1;
+                }
+
+                int y = x - k;
+                while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+
+                    x++;
+                    y++;
+                }
+
+                trace[base + (k + d) / 2] = x;
+
+                if (x >= n && y >= m) {
+
+                    backtrack(d, k, aStart, bStart, emitter);
+                    return true;
+                }
+            }
+        }
+
+        throw new AssertionError("Edit path not found");
+    }
+
+    private void backtrack(
+            final int edits, final int lastDiagonal, final int aStart, final int bStart, final Emitter emitter
+    ) {
+
+        // Diagonal runs collected from the end as triples of x, y and length
+        int size = 0;
+
+        int k = lastDiagonal;
+        int x = trace[edits * (edits + 1) / 2 + (k + edits) / 2];
+        for (int d = edits; d > 0; d--) {
+
+            final int previous = (d - 1) * d / 2;
+            final boolean down = k == -d || (k != d && trace[previous + (k - 1 + d - 1) / 2] < trace[previous + (k + 1 + d - 1) / 2]);
+            final int previousK = down ? k + 1 : k - 1;
+            final int previousX = trace[previous + (previousK + d - 1) / 2];
+            final int start = down ? previousX : previousX + 1;
+
+            if (x > start) {
+
+                snakes = ensure(snakes, size + 3);
+                snakes[size++] = start;
+                snakes[size++] = start - k;
+                snakes[size++] = x - start;
+            }
+
+            k = previousK;
+            x = previousX;
+        }
+
+        if (x > 0) {
+
+            snakes = ensure(snakes, size + 3);
+            snakes[size++] = 0;
+            snakes[size++] = 0;
+            snakes[size++] = x;
+        }
+
+        for (int i = size - 3; i >= 0; i -= 3) {
+
+            emitter.match(aStart + snakes[i], bStart + snakes[i + 1], snakes[i + 2]);
+        }
+    }
+
+    /**
+     * Divide and conquer on middle snake in linear space
+     */
+    private void linear(
+            final int[] a, int aStart, int aEnd,
+            final int[] b, int bStart, int bEnd,
+            final Emitter emitter
+    ) {
+
+        int prefix = 0;
+        while (aStart + prefix < aEnd && bStart + prefix < bEnd && a[aStart + prefix] == b[bStart + prefix]) {
+
+            prefix++;
+        }
+
+        emitter.match(aStart, bStart, prefix);
+        aStart += prefix;
+        bStart += prefix;
+
+        int suffix = 0;
+        while (aEnd - suffix > aStart && bEnd - suffix > bStart && a[aEnd - 1 - suffix] == b[bEnd - 1 - suffix]) {
+
+            suffix++;
+        }
+
+        aEnd -= suffix;
+        bEnd -= suffix;
+
+        if (aStart < aEnd && bStart < bEnd) {
+
+            final int[] snake = middleSnake(a, aStart, aEnd, b, bStart, bEnd);
+
+            linear(a, aStart, aStart + snake[0], b, bStart, bStart + snake[1], emitter);
+            emitter.match(aStart + snake[0], bStart + snake[1], snake[2] - snake[0]);
+            linear(a, aStart + snake[2], aEnd, b, bStart + snake[3], bEnd, emitter);
+        }
+
+        emitter.match(aEnd, bEnd, suffix);
+    }
+
+    /**
+     * Find snake in the middle of shortest edit path
+     *
+     * @return Start and end coordinates relative to range starts
+     */
+    private int[] middleSnake(
+            final int[] a, final int aStart, final int aEnd,
+            final int[] b, final int bStart, final int bEnd
+    ) {
+
+        final int n = aEnd - aStart;
+        final int m = bEnd - bStart;
+        final int delta = n - m;
+        final boolean odd = (delta & 1) != 0;
+        final int max = (n + m + 1) / 2;
+        final int offset = max + 1;
+
+        forward = ensure(forward, 2 * offset + 1);
+        backward = ensure(backward, 2 * offset + 1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+
+        for (int d = 0; d <= max; d++) {
+
+            for (int k = -d; k <= d; k += 2) {
+
+                int x = k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])
+                        ? forward[offset + k + 1]
+                        : forward[offset + k - 1] + 1
+                ;
+                int y = x - k;
+                final int startX = x;
+                final int startY = y;
+                while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+
+                    x++;
+                    y++;
+                }
+
+                forward[offset + k] = x;
+
+                final int reverseK = delta - k;
+                if (odd && reverseK >= -(d - 1) && reverseK <= d - 1 && x + backward[offset + reverseK] >= n) {
+
+                    return new int[] {startX, startY, x, y};
+                }
+            }
+
+            // Same search on reversed sequences
+            for (int k = -d; k <= d; k += 2) {
+
+                int x = k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1])
+                        ? backward[offset + k + 1]
+                        : backward[offset + k - 1] + 1
+                ;
+                int y = x - k;
+                final int startX = x;
+                final int startY = y;
+                while (x < n && y < m && a[aEnd - 1 - x] == b[bEnd - 1 - y]) {
+
+                    x++;
+                    y++;
+                }
+
+                backward[offset + k] = x;
+
+                final int forwardK = delta - k;
+                if (!odd && forwardK >= -d && forwardK <= d && x + forward[offset + forwardK] >= n) {
+
+                    return new int[] {n - x, m - y, n - startX, m - startY};
+                }
+            }
+        }
+
+        throw new AssertionError("Middle snake not found");
+    }
+
+    private static int[] ensure(final int[] buffer, final int size) {
+
+        if (buffer.length >= size) return buffer;
+
+        return Arrays.copyOf(buffer, Math.max(size, (int) Math.min(Integer.MAX_VALUE - 8, 2L * buffer.length)));
+    }
+
+    /**
+     * Drop buffers too large to be kept
+     */
+    private void release() {
+
+        if (trace.length > RETAIN_LIMIT) trace = new int[0];
+        if (forward.length > RETAIN_LIMIT) forward = new int[0];
+        if (backward.length > RETAIN_LIMIT) backward = new int[0];
+        if (snakes.length > RETAIN_LIMIT) snakes = new int[0];
+    }
+
+    /**
+     * Turn matched runs into edits between them
+     *
+     * @author ogondza
+     */
+    private static final class Emitter {
+
+        private final Callback callback;
+        private int a;
+        private int b;
+
+        private Emitter(final int a, final int b, final Callback callback) {
+
+            this.a = a;
+            this.b = b;
+            this.callback = callback;
+        }
+
+        /**
+         * Lines starting at <tt>aStart</tt> and <tt>bStart</tt> are equal
+         */
+        private void match(final int aStart, final int bStart, final int length) {
+
+            // Keep edits that are not separated by any match together
+            if (length == 0) return;
+
+            end(aStart, bStart);
+
+            a = aStart + length;
+            b = bStart + length;
+        }
+
+        /**
+         * Report edit preceding the position, if any
+         */
+        private void end(final int aEnd, final int bEnd) {
+
+            if (aEnd != a || bEnd != b) {
+
+                callback.edit(a, aEnd, b, bEnd);
+            }
+
+            a = aEnd;
+            b = bEnd;
+        }
+    }
+}
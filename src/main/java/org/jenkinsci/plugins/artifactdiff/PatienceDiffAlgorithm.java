@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import hudson.Extension;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Patience diff
+ *
+ * <p>Lines occurring exactly once in both sequences are used as anchors, the
+ * longest sequence of anchors that appear in the same order in both of them is
+ * matched and the gaps are compared recursively. Ranges without unique lines
+ * are compared using Myers algorithm.
+ *
+ * @author ogondza
+ */
+@Extension
+public class PatienceDiffAlgorithm extends DiffAlgorithm {
+
+    public static final String NAME = "patience";
+
+    @Override
+    public String getName() {
+
+        return NAME;
+    }
+
+    @Override
+    protected void match(final int[] original, final int[] revised, final int[] match) {
+
+        match(original, 0, original.length, revised, 0, revised.length, match);
+    }
+
+    @Override
+    public DiffAlgorithm getFallback() {
+
+        return new HistogramDiffAlgorithm();
+    }
+
+    private void match(
+            final int[] a, int aStart, int aEnd,
+            final int[] b, int bStart, int bEnd,
+            final int[] match
+    ) {
+
+        while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+
+            match[aStart++] = bStart++;
+        }
+
+        while (aStart < aEnd && bStart < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+
+            match[--aEnd] = --bEnd;
+        }
+
+        if (aStart == aEnd || bStart == bEnd) return;
+
+        final int[][] anchors = getAnchors(a, aStart, aEnd, b, bStart, bEnd);
+        if (anchors[0].length == 0) {
+
+            matchMyers(a, aStart, aEnd, b, bStart, bEnd, match);
+            return;
+        }
+
+        int aPrevious = aStart;
+        int bPrevious = bStart;
+        for (int k = 0; k < anchors[0].length; k++) {
+
+            final int aAnchor = anchors[0][k];
+            final int bAnchor = anchors[1][k];
+
+            match(a, aPrevious, aAnchor, b, bPrevious, bAnchor, match);
+            match[aAnchor] = bAnchor;
+
+            aPrevious = aAnchor + 1;
+            bPrevious = bAnchor + 1;
+        }
+
+        match(a, aPrevious, aEnd, b, bPrevious, bEnd, match);
+    }
+
+    /**
+     * Longest sequence of lines unique in both ranges appearing in the same order
+     *
+     * @return Positions of anchors in <tt>a</tt> and <tt>b</tt>.
+     */
+    private int[][] getAnchors(
+            final int[] a, final int aStart, final int aEnd,
+            final int[] b, final int bStart, final int bEnd
+    ) {
+
+        // Token -> {count in a, position in a, count in b, position in b}
+        final Map<Integer, int[]> occurrences = new HashMap<Integer, int[]>();
+        for (int i = aStart; i < aEnd; i++) {
+
+            int[] occurrence = occurrences.get(a[i]);
+            if (occurrence == null) {
+
+                occurrence = new int[4];
+                occurrences.put(a[i], occurrence);
+            }
+
+            occurrence[0]++;
+            occurrence[1] = i;
+        }
+
+        for (int j = bStart; j < bEnd; j++) {
+
+            final int[] occurrence = occurrences.get(b[j]);
+            if (occurrence == null) continue;
+
+            occurrence[2]++;
+            occurrence[3] = j;
+        }
+
+        // Unique pairs ordered by position in a
+        final int[] aUnique = new int[aEnd - aStart];
+        final int[] bUnique = new int[aEnd - aStart];
+        int unique = 0;
+        for (int i = aStart; i < aEnd; i++) {
+
+            final int[] occurrence = occurrences.get(a[i]);
+            if (occurrence[0] == 1 && occurrence[2] == 1) {
+
+                aUnique[unique] = i;
+                bUnique[unique] = occurrence[3];
+                unique++;
+            }
+        }
+
+        // Patience sorting to find longest increasing subsequence of positions in b
+        final int[] pileTops = new int[unique];
+        final int[] previous = new int[unique];
+        int piles = 0;
+        for (int k = 0; k < unique; k++) {
+
+            int low = 0;
+            int high = piles;
+            while (low < high) {
+
+                final int middle = (low + high) >>> 1;
+                if (bUnique[pileTops[middle]] < bUnique[k]) {
+
+                    low = middle + 1;
+                } else {
+
+                    high = middle;
+                }
+            }
+
+            previous[k] = low > 0 ? pileTops[low - 1] : -1;
+            pileTops[low] = k;
+            if (low == piles) {
+
+                piles++;
+            }
+        }
+
+        final int[][] anchors = new int[2][piles];
+        int k = piles > 0 ? pileTops[piles - 1] : -1;
+        for (int i = piles - 1; i >= 0; i--) {
+
+            anchors[0][i] = aUnique[k];
+            anchors[1][i] = bUnique[k];
+            k = previous[k];
+        }
+
+        return anchors;
+    }
+}
@@ -27,12 +27,16 @@ import hudson.model.Job;
 import hudson.model.Run;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletResponse;
 
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
 import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
@@ -44,6 +48,29 @@ import org.kohsuke.stapler.StaplerResponse;
  */
 public abstract class Response implements HttpResponse {
 
+    /**
+     * Integer request parameter
+     *
+     * @param min Smallest value accepted.
+     */
+    /*package*/ static int getInt(
+            final StaplerRequest req, final String name, final int defaultValue, final int min
+    ) throws Exception {
+
+        final String value = req.getParameter(name);
+        if (value == null) return defaultValue;
+
+        try {
+
+            final int number = Integer.parseInt(value);
+            if (number >= min) return number;
+        } catch (NumberFormatException ex) {
+            // Reported below
+        }
+
+        throw new Exception.BadRequest("Malformed " + name);
+    }
+
     /**
      * List artifacts
      *
@@ -93,6 +120,81 @@ public abstract class Response implements HttpResponse {
         }
     }
 
+    /**
+     * Window of builds having an artifact, newest first
+     *
+     * <p>Serves <tt>?path=...&amp;before=N&amp;limit=M</tt> as JSON object
+     * holding <tt>builds</tt> and <tt>next</tt> cursor to be passed as
+     * <tt>before</tt> to get the following window, if there is one. Only the
+     * builds in the window are loaded.
+     *
+     * @author ogondza
+     */
+    public static final class BuildList extends Response {
+
+        /*package*/ static final int DEFAULT_LIMIT = 50;
+        /*package*/ static final int MAX_LIMIT = 500;
+
+        private final Job<?, ?> job;
+        private final String path;
+        private final int before;
+        private final int limit;
+
+        public BuildList(final ArtifactDifference diff, final StaplerRequest req) throws Exception {
+
+            this.job = diff.getOwner().getParent();
+
+            final String path = req.getParameter("path");
+            if (path == null || path.isEmpty()) throw new Exception.BadRequest("No path provided");
+
+            this.path = ArchiveDiff.getArchive(path);
+            this.before = getInt(req, "before", Integer.MAX_VALUE, 1);
+            this.limit = Math.min(MAX_LIMIT, getInt(req, "limit", DEFAULT_LIMIT, 1));
+        }
+
+        public void generateResponse(
+                final StaplerRequest req,
+                final StaplerResponse rsp,
+                final Object node
+        ) throws IOException, ServletException {
+
+            final int[] numbers = ArtifactIndex.of(job).getBuilds(path);
+
+            final JSONArray builds = new JSONArray();
+            int next = getWindowEnd(numbers, before);
+            while (next > 0 && builds.size() < limit) {
+
+                final Run<?, ?> build = job.getBuildByNumber(numbers[--next]);
+                if (build == null) continue;
+
+                builds.element(new JSONObject()
+                        .element("number", build.getNumber())
+                        .element("result", build.getResult() == null ? null : build.getResult().toString())
+                        .element("color", build.getIconColor().getHtmlBaseColor())
+                );
+            }
+
+            final JSONObject json = new JSONObject().element("builds", builds);
+            if (next > 0) {
+
+                json.element("next", numbers[next]);
+            }
+
+            rsp.setContentType("application/json;charset=UTF-8");
+            json.write(rsp.getWriter());
+        }
+
+        /**
+         * Index of the first build not preceding the cursor
+         */
+        /*package*/ static int getWindowEnd(final int[] numbers, final int before) {
+
+            final int position = Arrays.binarySearch(numbers, before);
+
+            return position >= 0 ? position : -position - 1;
+        }
+    }
+
     public abstract static class Exception extends ServletException {
 
         private final int code;
@@ -104,7 +206,7 @@ public abstract class Response implements HttpResponse {
             this.code = code;
         }
 
-        public final void send(final StaplerResponse rsp) throws IOException {
+        public void send(final StaplerResponse rsp) throws IOException {
 
             rsp.sendError(this.code, this.getMessage());
         }
@@ -124,5 +226,29 @@ public abstract class Response implements HttpResponse {
                 super(msg, HttpServletResponse.SC_BAD_REQUEST);
             }
         }
+
+        public static class ServiceUnavailable extends Exception {
+
+            private final int retryAfter;
+
+            public ServiceUnavailable(final String msg, final int retryAfter) {
+
+                super(msg, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+
+                this.retryAfter = retryAfter;
+            }
+
+            public int getRetryAfter() {
+
+                return retryAfter;
+            }
+
+            @Override
+            public void send(final StaplerResponse rsp) throws IOException {
+
+                rsp.setHeader("Retry-After", Integer.toString(retryAfter));
+                super.send(rsp);
+            }
+        }
     }
 }
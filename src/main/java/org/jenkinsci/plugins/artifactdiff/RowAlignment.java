@@ -0,0 +1,425 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Alignment of unified diff lines into side-by-side rows
+ *
+ * <p>Context lines occupy both sides of a row while removed lines are paired
+ * with lines added in their place. Hunk headers and notes span the whole row.
+ * Rather than the rows, runs of rows sharing the same kind are kept together
+ * with offsets of every {@link #CHECKPOINT}th diff line, so a slice of rows
+ * is read from the diff text without parsing what precedes it.
+ *
+ * @author ogondza
+ */
+public final class RowAlignment {
+
+    /*package*/ static final int CHECKPOINT = 256;
+
+    /*package*/ static final RowAlignment EMPTY = new Builder().build();
+
+    private static final byte CONTEXT = 0;
+    private static final byte CHANGE = 1;
+    private static final byte HUNK = 2;
+    private static final byte NOTE = 3;
+
+    private final int size;
+    private final int rows;
+    private final byte[] kinds;
+    /** First row of the run */
+    private final int[] starts;
+    /** Diff line of the first line of the run */
+    private final int[] lines;
+    /** Lines of the old side, or all lines of the run unless it is a change */
+    private final int[] oldCounts;
+    private final int[] newCounts;
+    private final int[] oldNumbers;
+    private final int[] newNumbers;
+    /** Character offsets of every CHECKPOINT-th diff line */
+    private final long[] checkpoints;
+
+    private RowAlignment(final Builder builder) {
+
+        this.size = builder.size;
+        this.rows = builder.rows;
+        this.kinds = Arrays.copyOf(builder.kinds, size);
+        this.starts = Arrays.copyOf(builder.starts, size);
+        this.lines = Arrays.copyOf(builder.lines, size);
+        this.oldCounts = Arrays.copyOf(builder.oldCounts, size);
+        this.newCounts = Arrays.copyOf(builder.newCounts, size);
+        this.oldNumbers = Arrays.copyOf(builder.oldNumbers, size);
+        this.newNumbers = Arrays.copyOf(builder.newNumbers, size);
+        this.checkpoints = Arrays.copyOf(builder.checkpoints, builder.checkpointCount);
+    }
+
+    /**
+     * Align diff text read from the reader
+     */
+    public static RowAlignment of(final Reader reader) throws IOException {
+
+        final BufferedReader lines = new BufferedReader(reader);
+        final Builder builder = new Builder();
+
+        String line;
+        while ((line = lines.readLine()) != null) {
+
+            builder.add(line);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Number of rows
+     */
+    public int getRows() {
+
+        return rows;
+    }
+
+    /**
+     * Read slice of rows from the diff text the alignment was created for
+     *
+     * @param reader Diff text from the beginning. Caller is supposed to close it.
+     */
+    public List<Row> read(final Reader reader, final int from, final int count) throws IOException {
+
+        final int to = Math.min(rows, from + count);
+        if (from >= to) return new ArrayList<Row>(0);
+
+        // Collect diff lines the rows are made of, in the order they appear in the text
+        final TreeMap<Integer, String> text = new TreeMap<Integer, String>();
+        for (int run = getRun(from); run < size && starts[run] < to; run++) {
+
+            final int first = Math.max(from, starts[run]) - starts[run];
+            final int last = Math.min(to, starts[run] + getRowCount(run)) - starts[run];
+            for (int i = first; i < last; i++) {
+
+                if (i < oldCounts[run]) text.put(lines[run] + i, null);
+                if (kinds[run] == CHANGE && i < newCounts[run]) text.put(lines[run] + oldCounts[run] + i, null);
+            }
+        }
+
+        readLines(new BufferedReader(reader), text);
+
+        final List<Row> slice = new ArrayList<Row>(to - from);
+        for (int run = getRun(from); run < size && starts[run] < to; run++) {
+
+            final int first = Math.max(from, starts[run]) - starts[run];
+            final int last = Math.min(to, starts[run] + getRowCount(run)) - starts[run];
+            for (int i = first; i < last; i++) {
+
+                slice.add(getRow(run, i, text));
+            }
+        }
+
+        return slice;
+    }
+
+    private Row getRow(final int run, final int i, final Map<Integer, String> text) {
+
+        final String line = text.get(lines[run] + i);
+        switch (kinds[run]) {
+            case HUNK:
+            case NOTE:
+                final DiffLine whole = new DiffLine(
+                        kinds[run] == HUNK ? DiffLine.Type.HUNK : DiffLine.Type.NOTE, line, 0, 0
+                );
+                return new Row(whole, whole);
+            case CONTEXT:
+                final DiffLine context = new DiffLine(
+                        DiffLine.Type.CONTEXT, strip(line), oldNumbers[run] + i, newNumbers[run] + i
+                );
+                return new Row(context, context);
+            default:
+                final DiffLine removed = i < oldCounts[run]
+                        ? new DiffLine(DiffLine.Type.REMOVED, strip(line), oldNumbers[run] + i, 0)
+                        : null
+                ;
+                final DiffLine added = i < newCounts[run]
+                        ? new DiffLine(DiffLine.Type.ADDED, strip(text.get(lines[run] + oldCounts[run] + i)), 0, newNumbers[run] + i)
+                        : null
+                ;
+                return new Row(removed, added);
+        }
+    }
+
+    private static String strip(final String line) {
+
+        return line.isEmpty() ? line : line.substring(1);
+    }
+
+    /**
+     * Fill in requested diff lines skipping to the closest checkpoint
+     */
+    private void readLines(final BufferedReader reader, final TreeMap<Integer, String> text) throws IOException {
+
+        long position = 0;
+        int line = 0;
+        for (final Map.Entry<Integer, String> entry: text.entrySet()) {
+
+            final int wanted = entry.getKey();
+            final int checkpoint = wanted / CHECKPOINT;
+            if (checkpoint * CHECKPOINT > line) {
+
+                skip(reader, checkpoints[checkpoint] - position);
+                position = checkpoints[checkpoint];
+                line = checkpoint * CHECKPOINT;
+            }
+
+            String read = null;
+            for (; line <= wanted; line++) {
+
+                read = reader.readLine();
+                if (read == null) throw new EOFException("Diff is shorter than its alignment");
+
+                position += read.length() + 1;
+            }
+
+            entry.setValue(read);
+        }
+    }
+
+    private static void skip(final Reader reader, long chars) throws IOException {
+
+        while (chars > 0) {
+
+            final long skipped = reader.skip(chars);
+            if (skipped <= 0) throw new EOFException("Diff is shorter than its alignment");
+
+            chars -= skipped;
+        }
+    }
+
+    /**
+     * Run containing the row
+     */
+    private int getRun(final int row) {
+
+        final int position = Arrays.binarySearch(starts, 0, size, row);
+
+        return position >= 0 ? position : -position - 2;
+    }
+
+    private int getRowCount(final int run) {
+
+        return kinds[run] == CHANGE ? Math.max(oldCounts[run], newCounts[run]) : oldCounts[run];
+    }
+
+    /**
+     * Pair of lines shown side by side
+     *
+     * <p>Hunk headers, notes and context lines are the same on both sides.
+     *
+     * @author ogondza
+     */
+    public static final class Row {
+
+        private final DiffLine left;
+        private final DiffLine right;
+
+        public Row(final DiffLine left, final DiffLine right) {
+
+            this.left = left;
+            this.right = right;
+        }
+
+        /**
+         * @return null in case nothing was removed in place of added line.
+         */
+        public DiffLine getLeft() {
+
+            return left;
+        }
+
+        /**
+         * @return null in case nothing was added in place of removed line.
+         */
+        public DiffLine getRight() {
+
+            return right;
+        }
+    }
+
+    /**
+     * Collect runs of rows as diff lines are added
+     *
+     * @author ogondza
+     */
+    /*package*/ static final class Builder {
+
+        private final DiffLines parser;
+        private String current;
+
+        private int size = 0;
+        private int rows = 0;
+        private byte[] kinds = new byte[16];
+        private int[] starts = new int[16];
+        private int[] lines = new int[16];
+        private int[] oldCounts = new int[16];
+        private int[] newCounts = new int[16];
+        private int[] oldNumbers = new int[16];
+        private int[] newNumbers = new int[16];
+
+        private long[] checkpoints = new long[16];
+        private int checkpointCount = 0;
+
+        private int line = 0;
+        private long position = 0;
+
+        /*package*/ Builder() {
+
+            // Lines are fed one at a time
+            this.parser = new DiffLines(new Iterator<String>() {
+
+                public boolean hasNext() {
+
+                    return current != null;
+                }
+
+                public String next() {
+
+                    final String next = current;
+                    current = null;
+                    return next;
+                }
+
+                public void remove() {
+
+                    throw new UnsupportedOperationException();
+                }
+            });
+        }
+
+        /*package*/ void add(final String text) {
+
+            if (line % CHECKPOINT == 0) {
+
+                if (checkpointCount == checkpoints.length) {
+
+                    checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+                }
+
+                checkpoints[checkpointCount++] = position;
+            }
+
+            current = text;
+            final DiffLine diffLine = parser.next();
+
+            switch (diffLine.getType()) {
+                case OLD_FILE:
+                case NEW_FILE:
+                    break;
+                case HUNK:
+                    open(HUNK, diffLine.getOldNumber(), diffLine.getNewNumber());
+                    oldCounts[size - 1] = 1;
+                    break;
+                case CONTEXT:
+                    if (!isOpen(CONTEXT)) open(CONTEXT, diffLine.getOldNumber(), diffLine.getNewNumber());
+                    oldCounts[size - 1]++;
+                    break;
+                case REMOVED:
+                    if (!isOpen(CHANGE) || newCounts[size - 1] > 0) open(CHANGE, diffLine.getOldNumber(), 0);
+                    oldCounts[size - 1]++;
+                    break;
+                case ADDED:
+                    if (!isOpen(CHANGE)) open(CHANGE, 0, diffLine.getNewNumber());
+                    if (newCounts[size - 1] == 0) newNumbers[size - 1] = diffLine.getNewNumber();
+                    newCounts[size - 1]++;
+                    break;
+                default:
+                    if (!isOpen(NOTE)) open(NOTE, 0, 0);
+                    oldCounts[size - 1]++;
+            }
+
+            line++;
+            position += text.length() + 1;
+        }
+
+        private boolean isOpen(final byte kind) {
+
+            return size > 0 && kinds[size - 1] == kind && lines[size - 1] + getCount(size - 1) == line;
+        }
+
+        private int getCount(final int run) {
+
+            return kinds[run] == CHANGE ? oldCounts[run] + newCounts[run] : oldCounts[run];
+        }
+
+        private void open(final byte kind, final int oldNumber, final int newNumber) {
+
+            close();
+
+            if (size == kinds.length) {
+
+                final int capacity = size * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                lines = Arrays.copyOf(lines, capacity);
+                oldCounts = Arrays.copyOf(oldCounts, capacity);
+                newCounts = Arrays.copyOf(newCounts, capacity);
+                oldNumbers = Arrays.copyOf(oldNumbers, capacity);
+                newNumbers = Arrays.copyOf(newNumbers, capacity);
+            }
+
+            kinds[size] = kind;
+            starts[size] = rows;
+            lines[size] = line;
+            oldCounts[size] = 0;
+            newCounts[size] = 0;
+            oldNumbers[size] = oldNumber;
+            newNumbers[size] = newNumber;
+            size++;
+        }
+
+        /**
+         * Count rows of the last run
+         */
+        private void close() {
+
+            if (size == 0) return;
+
+            final int run = size - 1;
+            rows = starts[run] + (kinds[run] == CHANGE ? Math.max(oldCounts[run], newCounts[run]) : oldCounts[run]);
+        }
+
+        /*package*/ RowAlignment build() {
+
+            close();
+            return new RowAlignment(this);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.servlet.ServletException;
+
+/**
+ * Coalesce concurrent computations of the same key
+ *
+ * <p>The first caller computes the value on its own thread while the callers
+ * arriving in the meantime wait for it and get the same value or failure.
+ * The key is forgotten once the computation completes.
+ *
+ * @author ogondza
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<K, FutureTask<V>>();
+
+    public V execute(final K key, final Callable<V> task) throws IOException, ServletException {
+
+        final FutureTask<V> computation = new FutureTask<V>(task);
+        final FutureTask<V> running = inFlight.putIfAbsent(key, computation);
+        if (running != null) return get(running);
+
+        try {
+
+            computation.run();
+        } finally {
+
+            inFlight.remove(key, computation);
+        }
+
+        return get(computation);
+    }
+
+    /*package*/ boolean isInFlight(final K key) {
+
+        return inFlight.containsKey(key);
+    }
+
+    private V get(final FutureTask<V> computation) throws IOException, ServletException {
+
+        try {
+
+            return computation.get();
+        } catch (InterruptedException ex) {
+
+            // Leave the computation running for others
+            throw (InterruptedIOException) new InterruptedIOException("Interrupted waiting for computation").initCause(ex);
+        } catch (ExecutionException ex) {
+
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof ServletException) throw (ServletException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+
+            throw new IOException("Computation failed", cause);
+        }
+    }
+}
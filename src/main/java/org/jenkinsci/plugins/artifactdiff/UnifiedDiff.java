@@ -0,0 +1,281 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import difflib.Delta;
+import difflib.Patch;
+
+/**
+ * Unified diff of two line sequences
+ *
+ * <p>Hunks are built one at a time as they are iterated or written so the
+ * whole patch never needs to be held in memory. The output is the same as
+ * the one of {@link difflib.DiffUtils#generateUnifiedDiff}.
+ *
+ * @author ogondza
+ */
+public class UnifiedDiff implements Iterable<String> {
+
+    /**
+     * Kind of compared content
+     */
+    public enum Type {
+        TEXT,
+        BINARY,
+        ARCHIVE;
+    }
+
+    private final String originalPath;
+    private final String revisedPath;
+    private final List<String> original;
+    private final List<Delta> deltas;
+    private final int context;
+
+    public UnifiedDiff(
+            final String originalPath,
+            final String revisedPath,
+            final List<String> original,
+            final Patch patch,
+            final int context
+    ) {
+
+        this.originalPath = originalPath;
+        this.revisedPath = revisedPath;
+        this.original = original;
+        this.deltas = new ArrayList<Delta>(patch.getDeltas());
+        this.context = context;
+    }
+
+    public boolean isEmpty() {
+
+        return deltas.isEmpty();
+    }
+
+    public Type getType() {
+
+        return Type.TEXT;
+    }
+
+    /**
+     * Write the diff lines separated by newlines
+     */
+    public void writeTo(final Writer out) throws IOException {
+
+        boolean first = true;
+        for (final String line: this) {
+
+            if (!first) {
+
+                out.write('\n');
+            }
+
+            first = false;
+            out.write(line);
+        }
+    }
+
+    public List<String> getLines() {
+
+        final List<String> lines = new ArrayList<String>();
+        for (final String line: this) {
+
+            lines.add(line);
+        }
+
+        return lines;
+    }
+
+    /**
+     * Iterate diff lines formatting one hunk at a time
+     */
+    public Iterator<String> iterator() {
+
+        final Iterator<Hunk> hunks = getHunks().iterator();
+        return new Iterator<String>() {
+
+            private Iterator<String> hunk = getHeader().iterator();
+
+            public boolean hasNext() {
+
+                while (!hunk.hasNext()) {
+
+                    if (!hunks.hasNext()) return false;
+
+                    hunk = format(hunks.next()).iterator();
+                }
+
+                return true;
+            }
+
+            public String next() {
+
+                if (!hasNext()) throw new NoSuchElementException();
+
+                return hunk.next();
+            }
+
+            public void remove() {
+
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Iterate hunks building one at a time
+     */
+    public Iterable<Hunk> getHunks() {
+
+        return new Iterable<Hunk>() {
+
+            public Iterator<Hunk> iterator() {
+
+                return new Iterator<Hunk>() {
+
+                    private int nextDelta = 0;
+
+                    public boolean hasNext() {
+
+                        return nextDelta < deltas.size();
+                    }
+
+                    public Hunk next() {
+
+                        if (!hasNext()) throw new NoSuchElementException();
+
+                        final int hunkEnd = getHunkEnd(nextDelta);
+                        final Hunk hunk = getHunk(nextDelta, hunkEnd);
+                        nextDelta = hunkEnd;
+
+                        return hunk;
+                    }
+
+                    public void remove() {
+
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    private List<String> getHeader() {
+
+        if (deltas.isEmpty()) return Collections.emptyList();
+
+        return Arrays.asList("--- " + originalPath, "+++ " + revisedPath);
+    }
+
+    private static List<String> format(final Hunk hunk) {
+
+        final List<String> lines = new ArrayList<String>(hunk.getLines().size() + 1);
+        lines.add(hunk.getHeader());
+        for (final DiffLine line: hunk.getLines()) {
+
+            lines.add(line.getLine());
+        }
+
+        return lines;
+    }
+
+    /**
+     * Index of the first delta too far from its predecessor to share the hunk
+     */
+    private int getHunkEnd(final int from) {
+
+        for (int i = from + 1; i < deltas.size(); i++) {
+
+            final Delta previous = deltas.get(i - 1);
+            final int previousEnd = previous.getOriginal().getPosition() + previous.getOriginal().size();
+
+            if (previousEnd + context < deltas.get(i).getOriginal().getPosition() - context) return i;
+        }
+
+        return deltas.size();
+    }
+
+    private Hunk getHunk(final int from, final int to) {
+
+        final Delta firstDelta = deltas.get(from);
+        final Delta lastDelta = deltas.get(to - 1);
+
+        final int firstPosition = firstDelta.getOriginal().getPosition();
+        final int contextStart = Math.max(0, firstPosition - context);
+        final int lastEnd = lastDelta.getOriginal().getPosition() + lastDelta.getOriginal().size();
+        final int contextEnd = Math.min(original.size(), lastEnd + context);
+
+        // Unchanged lines count towards both sides
+        final int originalTotal = contextEnd - contextStart;
+        int revisedTotal = originalTotal;
+        for (int i = from; i < to; i++) {
+
+            revisedTotal += deltas.get(i).getRevised().size() - deltas.get(i).getOriginal().size();
+        }
+
+        final int originalStart = Math.max(1, firstPosition + 1 - context);
+        final int revisedStart = Math.max(1, firstDelta.getRevised().getPosition() + 1 - context);
+
+        final List<DiffLine> lines = new ArrayList<DiffLine>(originalTotal + revisedTotal);
+        int line = contextStart;
+        int revisedLine = revisedStart;
+        for (int i = from; i < to; i++) {
+
+            final Delta delta = deltas.get(i);
+
+            for (; line < delta.getOriginal().getPosition(); line++) {
+
+                lines.add(new DiffLine(DiffLine.Type.CONTEXT, original.get(line), line + 1, revisedLine++));
+            }
+
+            int removedLine = line + 1;
+            for (final Object removed: delta.getOriginal().getLines()) {
+
+                lines.add(new DiffLine(DiffLine.Type.REMOVED, removed.toString(), removedLine++, 0));
+            }
+
+            for (final Object added: delta.getRevised().getLines()) {
+
+                lines.add(new DiffLine(DiffLine.Type.ADDED, added.toString(), 0, revisedLine++));
+            }
+
+            line += delta.getOriginal().size();
+        }
+
+        for (; line < contextEnd; line++) {
+
+            lines.add(new DiffLine(DiffLine.Type.CONTEXT, original.get(line), line + 1, revisedLine++));
+        }
+
+        return new Hunk(originalStart, originalTotal, revisedStart, revisedTotal, lines);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Changed parts of a removed line and the line added in its place
+ *
+ * <p>Lines are split into words, whitespace runs and single punctuation
+ * characters and the tokens are compared by {@link MyersDiff}. Ranges are
+ * character offsets into the line text, end exclusive, flattened into an
+ * array of <tt>start, end</tt> pairs.
+ *
+ * @author ogondza
+ */
+public final class WordDiff {
+
+    /** Longest line to be compared, longer lines are left without highlighting */
+    /*package*/ static final int MAX_LENGTH = Integer.getInteger(
+            WordDiff.class.getName() + ".maxLength", 10000
+    );
+
+    private final int[] original;
+    private final int[] revised;
+
+    private WordDiff(final int[] original, final int[] revised) {
+
+        this.original = original;
+        this.revised = revised;
+    }
+
+    /**
+     * @return null in case any of the lines is too long to compare.
+     */
+    public static WordDiff of(final String original, final String revised) {
+
+        if (original.length() > MAX_LENGTH || revised.length() > MAX_LENGTH) return null;
+
+        final int[] originalBounds = tokenize(original);
+        final int[] revisedBounds = tokenize(revised);
+
+        // Tokens are compared by identity of their text
+        final Map<String, Integer> ids = new HashMap<String, Integer>();
+        final int[] originalTokens = getIds(original, originalBounds, ids);
+        final int[] revisedTokens = getIds(revised, revisedBounds, ids);
+
+        final Ranges originalRanges = new Ranges(originalBounds);
+        final Ranges revisedRanges = new Ranges(revisedBounds);
+        MyersDiff.diff(
+                originalTokens, 0, originalTokens.length,
+                revisedTokens, 0, revisedTokens.length,
+                new MyersDiff.Callback() {
+
+                    public void edit(final int originalStart, final int originalEnd, final int revisedStart, final int revisedEnd) {
+
+                        originalRanges.add(originalStart, originalEnd);
+                        revisedRanges.add(revisedStart, revisedEnd);
+                    }
+                }
+        );
+
+        return new WordDiff(originalRanges.get(), revisedRanges.get());
+    }
+
+    /**
+     * Changed ranges of removed line
+     */
+    public int[] getOriginal() {
+
+        return original;
+    }
+
+    /**
+     * Changed ranges of added line
+     */
+    public int[] getRevised() {
+
+        return revised;
+    }
+
+    /**
+     * Token boundaries, token <tt>i</tt> spans <tt>[bounds[i], bounds[i + 1])</tt>
+     */
+    /*package*/ static int[] tokenize(final String line) {
+
+        int[] bounds = new int[16];
+        int size = 0;
+
+        int i = 0;
+        while (i < line.length()) {
+
+            if (size == bounds.length) {
+
+                bounds = Arrays.copyOf(bounds, size * 2);
+            }
+            bounds[size++] = i;
+
+            final char c = line.charAt(i++);
+            if (isWord(c)) {
+
+                while (i < line.length() && isWord(line.charAt(i))) i++;
+            } else if (Character.isWhitespace(c)) {
+
+                while (i < line.length() && Character.isWhitespace(line.charAt(i))) i++;
+            }
+        }
+
+        final int[] result = Arrays.copyOf(bounds, size + 1);
+        result[size] = line.length();
+
+        return result;
+    }
+
+    private static boolean isWord(final char c) {
+
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static int[] getIds(final String line, final int[] bounds, final Map<String, Integer> ids) {
+
+        final int[] tokens = new int[bounds.length - 1];
+        for (int i = 0; i < tokens.length; i++) {
+
+            final String token = line.substring(bounds[i], bounds[i + 1]);
+            Integer id = ids.get(token);
+            if (id == null) {
+
+                id = ids.size();
+                ids.put(token, id);
+            }
+
+            tokens[i] = id;
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Character ranges of edited tokens, adjacent ranges are merged
+     *
+     * @author ogondza
+     */
+    private static final class Ranges {
+
+        private final int[] bounds;
+        private int[] ranges = new int[8];
+        private int size = 0;
+
+        private Ranges(final int[] bounds) {
+
+            this.bounds = bounds;
+        }
+
+        private void add(final int tokenStart, final int tokenEnd) {
+
+            if (tokenStart == tokenEnd) return;
+
+            final int start = bounds[tokenStart];
+            final int end = bounds[tokenEnd];
+            if (size > 0 && ranges[size - 1] == start) {
+
+                ranges[size - 1] = end;
+                return;
+            }
+
+            if (size == ranges.length) {
+
+                ranges = Arrays.copyOf(ranges, size * 2);
+            }
+
+            ranges[size++] = start;
+            ranges[size++] = end;
+        }
+
+        private int[] get() {
+
+            return Arrays.copyOf(ranges, size);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArchiveDiffTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void compareListings() throws IOException {
+
+        final File lhs = zip("lhs.jar", "a.txt", "same", "b.txt", "removed", "c.txt", "old");
+        final File rhs = zip("rhs.jar", "a.txt", "same", "c.txt", "new", "d.txt", "added");
+
+        final ArchiveDiff diff = compare(lhs, rhs);
+
+        assertThat(diff.getAdded(), equalTo(1));
+        assertThat(diff.getRemoved(), equalTo(1));
+        assertThat(diff.getChanged(), equalTo(1));
+        assertThat(diff.getLines(), equalTo(Arrays.asList(
+                "--- 1/a.jar",
+                "+++ 2/a.jar",
+                "Archive entries differ: 1 added, 1 removed, 1 changed",
+                "-b.txt (7 bytes, crc be6cfa7d)",
+                "-c.txt (3 bytes, crc 3f5dd4e5)",
+                "+c.txt (3 bytes, crc 6be34445)",
+                "+d.txt (5 bytes, crc cbbf90eb)"
+        )));
+    }
+
+    @Test
+    public void sameEntries() throws IOException {
+
+        final ArchiveDiff diff = compare(zip("lhs.jar", "a.txt", "same"), zip("rhs.jar", "a.txt", "same"));
+
+        assertThat(diff.isEmpty(), equalTo(true));
+        assertThat(diff.getLines(), equalTo(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void missingArchive() throws IOException {
+
+        final ArchiveDiff diff = compare(new File(tmp.getRoot(), "missing.jar"), zip("rhs.jar", "a.txt", "new"));
+
+        assertThat(diff.getAdded(), equalTo(1));
+        assertThat(diff.getLines().get(0), equalTo("--- /dev/null"));
+    }
+
+    @Test
+    public void notAnArchive() throws IOException {
+
+        final File text = tmp.newFile("text.jar");
+
+        assertThat(compare(text, zip("rhs.jar", "a.txt", "new")), nullValue());
+    }
+
+    @Test
+    public void diffEntry() throws IOException {
+
+        final File lhs = zip("lhs.jar", "a.txt", "line one\nline 2");
+        final File rhs = zip("rhs.jar", "a.txt", "line 1\nline 2");
+
+        final List<String> lines = new FilePathDiff().getDiff(
+                new FilePathDiff.ArchiveEntry(lhs, "a.txt", "1/a.jar!/a.txt"),
+                new FilePathDiff.ArchiveEntry(rhs, "a.txt", "2/a.jar!/a.txt")
+        );
+
+        assertThat(lines, equalTo(Arrays.asList(
+                "--- 1/a.jar!/a.txt", "+++ 2/a.jar!/a.txt", "@@ -1,2 +1,2 @@", "-line one", "+line 1", " line 2"
+        )));
+    }
+
+    @Test
+    public void diffMissingEntry() throws IOException {
+
+        final File lhs = zip("lhs.jar", "a.txt", "line");
+
+        final List<String> lines = new FilePathDiff().getDiff(
+                new FilePathDiff.ArchiveEntry(lhs, "a.txt", "1/a.jar!/a.txt"),
+                new FilePathDiff.ArchiveEntry(lhs, "b.txt", "2/a.jar!/b.txt")
+        );
+
+        assertThat(lines.get(1), equalTo("+++ /dev/null"));
+    }
+
+    @Test
+    public void splitPath() {
+
+        assertThat(ArchiveDiff.getArchive("lib/a.jar!/META-INF/MANIFEST.MF"), equalTo("lib/a.jar"));
+        assertThat(ArchiveDiff.getEntry("lib/a.jar!/META-INF/MANIFEST.MF"), equalTo("META-INF/MANIFEST.MF"));
+        assertThat(ArchiveDiff.getArchive("lib/a.jar"), equalTo("lib/a.jar"));
+        assertThat(ArchiveDiff.getEntry("lib/a.jar"), nullValue());
+    }
+
+    private ArchiveDiff compare(final File lhs, final File rhs) throws IOException {
+
+        return ArchiveDiff.compare(
+                new FilePathDiff.MappedEntry(lhs, "1/a.jar"), new FilePathDiff.MappedEntry(rhs, "2/a.jar")
+        );
+    }
+
+    private File zip(final String name, final String... entries) throws IOException {
+
+        final File file = tmp.newFile(name);
+        final ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+        try {
+
+            for (int i = 0; i < entries.length; i += 2) {
+
+                zip.putNextEntry(new ZipEntry(entries[i]));
+                zip.write(entries[i + 1].getBytes("UTF-8"));
+                zip.closeEntry();
+            }
+        } finally {
+
+            zip.close();
+        }
+
+        return file;
+    }
+}
@@ -97,6 +97,49 @@ public class ArtifactDifferenceTest {
         assertThat(response, instanceOf(DiffResponse.Html.class));
     }
 
+    @Test
+    public void getJsonDiffResponse() throws IOException, ServletException {
+
+        doReturn(project).when(run).getParent();
+        doReturn(run).when(project).getBuildByNumber(1);
+
+        when(req.getRestOfPath()).thenReturn("/1/path");
+        when(req.getParameter("output")).thenReturn("json");
+
+        final HttpResponse response = new ArtifactDifference(run).doDynamic(req, rsp);
+
+        assertThat(response, instanceOf(DiffResponse.Json.class));
+    }
+
+    @Test
+    public void getSideBySideDiffResponse() throws IOException, ServletException {
+
+        doReturn(project).when(run).getParent();
+        doReturn(run).when(project).getBuildByNumber(1);
+
+        when(req.getRestOfPath()).thenReturn("/1/path");
+        when(req.getParameter("output")).thenReturn("sidebyside");
+
+        final HttpResponse response = new ArtifactDifference(run).doDynamic(req, rsp);
+
+        assertThat(response, instanceOf(DiffResponse.SideBySide.class));
+    }
+
+    @Test
+    public void getRowsDiffResponse() throws IOException, ServletException {
+
+        doReturn(project).when(run).getParent();
+        doReturn(run).when(project).getBuildByNumber(1);
+
+        when(req.getRestOfPath()).thenReturn("/1/path");
+        when(req.getParameter("output")).thenReturn("rows");
+        when(req.getParameter("from")).thenReturn("100");
+
+        final HttpResponse response = new ArtifactDifference(run).doDynamic(req, rsp);
+
+        assertThat(response, instanceOf(DiffResponse.Rows.class));
+    }
+
     @Test(expected=Response.Exception.NotFound.class)
     public void getNoSuchBuild() throws IOException, ServletException {
 
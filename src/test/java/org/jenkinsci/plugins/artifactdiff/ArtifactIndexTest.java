@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class ArtifactIndexTest {
+
+    private final ArtifactIndex index = new ArtifactIndex(null);
+
+    @Test
+    public void keepBuildsSorted() throws IOException {
+
+        index.add(3, Arrays.asList("a.jar", "b.jar"));
+        index.add(1, Arrays.asList("a.jar"));
+        index.add(2, Arrays.asList("b.jar"));
+        index.add(2, Arrays.asList("b.jar"));
+
+        assertThat(index.getBuilds("a.jar"), equalTo(new int[] {1, 3}));
+        assertThat(index.getBuilds("b.jar"), equalTo(new int[] {2, 3}));
+        assertThat(index.getBuilds("c.jar"), equalTo(new int[0]));
+    }
+
+    @Test
+    public void removeDeletedBuild() throws IOException {
+
+        index.add(1, Arrays.asList("a.jar", "b.jar"));
+        index.add(2, Arrays.asList("a.jar"));
+        index.add(3, Arrays.asList("a.jar"));
+
+        index.remove(2);
+        index.remove(1);
+
+        assertThat(index.getBuilds("a.jar"), equalTo(new int[] {3}));
+        assertThat(index.getBuilds("b.jar"), equalTo(new int[0]));
+    }
+
+    @Test
+    public void returnCopy() throws IOException {
+
+        index.add(1, Arrays.asList("a.jar"));
+        index.getBuilds("a.jar")[0] = 42;
+
+        assertThat(index.getBuilds("a.jar"), equalTo(new int[] {1}));
+    }
+
+    @Test
+    public void trackLastBuild() throws IOException {
+
+        assertThat(index.getLastBuild(), equalTo(0));
+
+        index.add(2, Arrays.asList("a.jar"));
+        index.add(1, Arrays.asList("a.jar"));
+        index.add(3, Collections.<String>emptyList());
+
+        assertThat(index.getLastBuild(), equalTo(3));
+        assertThat(index.getBuilds("a.jar"), equalTo(new int[] {1, 2}));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import hudson.model.Run;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArtifactManifestTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void fingerprintContent() throws IOException {
+
+        final ArtifactManifest.Fingerprint print = ArtifactManifest.Fingerprint.of(
+                write(tmp.newFile("a"), "content")
+        );
+
+        assertThat(print.getSize(), equalTo(7L));
+        assertThat(print.getSha256(), equalTo(
+                "ed7002b439e9ac845f22357d822bac1444730fbdb6016d3ec9432297b9ec9f73"
+        ));
+
+        assertThat(print, equalTo(ArtifactManifest.Fingerprint.of(
+                write(tmp.newFile("b"), "content")
+        )));
+        assertThat(print, not(equalTo(ArtifactManifest.Fingerprint.of(
+                write(tmp.newFile("c"), "CONTENT")
+        ))));
+    }
+
+    @Test
+    public void identicalArtifacts() throws IOException {
+
+        final Run<?, ?> lhs = getRun("same content");
+        final Run<?, ?> rhs = getRun("same content");
+
+        assertTrue(ArtifactManifest.identical(lhs, rhs, "artifact"));
+        assertTrue(new File(lhs.getRootDir(), "artifact-diff-manifest.xml").exists());
+    }
+
+    @Test
+    public void differentArtifacts() throws IOException {
+
+        assertFalse(ArtifactManifest.identical(
+                getRun("some content"), getRun("same content"), "artifact"
+        ));
+        assertFalse(ArtifactManifest.identical(
+                getRun("content"), getRun("longer content"), "artifact"
+        ));
+    }
+
+    @Test
+    public void missingArtifact() throws IOException {
+
+        final Run<?, ?> run = getRun("content");
+
+        assertFalse(ArtifactManifest.identical(run, run, "no/such/artifact"));
+        assertThat(ArtifactManifest.of(run).get("no/such/artifact"), nullValue());
+    }
+
+    @Test
+    public void buildInProgress() throws IOException {
+
+        final Run<?, ?> running = getRun("content");
+        when(running.isBuilding()).thenReturn(true);
+
+        assertFalse(ArtifactManifest.identical(running, getRun("content"), "artifact"));
+    }
+
+    private Run<?, ?> getRun(final String content) throws IOException {
+
+        final File rootDir = tmp.newFolder();
+        final File artifactsDir = new File(rootDir, "archive");
+        artifactsDir.mkdir();
+        write(new File(artifactsDir, "artifact"), content);
+
+        final Run<?, ?> run = mock(Run.class);
+        when(run.getRootDir()).thenReturn(rootDir);
+        when(run.getArtifactsDir()).thenReturn(artifactsDir);
+
+        return run;
+    }
+
+    private File write(final File file, final String content) throws IOException {
+
+        final FileOutputStream stream = new FileOutputStream(file);
+        try {
+
+            stream.write(content.getBytes("UTF-8"));
+        } finally {
+
+            stream.close();
+        }
+
+        return file;
+    }
+}
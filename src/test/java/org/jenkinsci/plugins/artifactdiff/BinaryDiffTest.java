@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BinaryDiffTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+    @Test
+    public void detectText() throws IOException {
+
+        assertThat(BinaryDiff.isBinary(stream(new byte[0]), UTF8), equalTo(false));
+        assertThat(BinaryDiff.isBinary(stream("text\nžluťoučký kůň".getBytes("UTF-8")), UTF8), equalTo(false));
+        assertThat(BinaryDiff.isBinary(stream(new byte[] {'a', (byte) 0xe9}), LATIN1), equalTo(false));
+    }
+
+    @Test
+    public void detectBinary() throws IOException {
+
+        assertThat(BinaryDiff.isBinary(stream(new byte[] {'a', 0, 'b'}), UTF8), equalTo(true));
+        assertThat(BinaryDiff.isBinary(stream(new byte[] {'a', (byte) 0xe9, 'b'}), UTF8), equalTo(true));
+        // Truncated sequence at the end of file
+        assertThat(BinaryDiff.isBinary(stream(new byte[] {'a', (byte) 0xc5}), UTF8), equalTo(true));
+    }
+
+    @Test
+    public void multibyteSequenceCutByHead() throws IOException {
+
+        final byte[] content = new byte[BinaryDiff.HEAD + 1];
+        Arrays.fill(content, (byte) 'a');
+        content[BinaryDiff.HEAD - 1] = (byte) 0xc5;
+        content[BinaryDiff.HEAD] = (byte) 0xbe;
+
+        assertThat(BinaryDiff.isBinary(stream(content), UTF8), equalTo(false));
+    }
+
+    @Test
+    public void identical() throws IOException {
+
+        final byte[] content = new byte[200000];
+        content[100000] = 42;
+
+        final BinaryDiff diff = compare(content, content.clone());
+
+        assertThat(diff.isEmpty(), equalTo(true));
+        assertThat(diff.getLines(), equalTo(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void differAfterFirstChunk() throws IOException {
+
+        final byte[] original = new byte[200000];
+        final byte[] revised = original.clone();
+        revised[100001] = 'A';
+
+        final List<String> lines = compare(original, revised).getLines();
+
+        assertThat(lines, equalTo(Arrays.asList(
+                "--- 1/a.bin",
+                "+++ 2/a.bin",
+                "Binary files differ at offset 100001, sizes 200000 vs 200000",
+                "-000186a0  00 00 00 00 00 00 00 00  00 00 00 00 00 00 00 00  |................|",
+                "-000186b0  00 00 00 00 00 00 00 00  00 00 00 00 00 00 00 00  |................|",
+                "-000186c0  00 00 00 00 00 00 00 00  00 00 00 00 00 00 00 00  |................|",
+                "-000186d0  00 00 00 00 00 00 00 00  00 00 00 00 00 00 00 00  |................|",
+                "+000186a0  00 41 00 00 00 00 00 00  00 00 00 00 00 00 00 00  |.A..............|",
+                "+000186b0  00 00 00 00 00 00 00 00  00 00 00 00 00 00 00 00  |................|",
+                "+000186c0  00 00 00 00 00 00 00 00  00 00 00 00 00 00 00 00  |................|",
+                "+000186d0  00 00 00 00 00 00 00 00  00 00 00 00 00 00 00 00  |................|"
+        )));
+    }
+
+    @Test
+    public void prefix() throws IOException {
+
+        final List<String> lines = compare("abc".getBytes(), "abcdef".getBytes()).getLines();
+
+        assertThat(lines, equalTo(Arrays.asList(
+                "--- 1/a.bin",
+                "+++ 2/a.bin",
+                "Binary files differ at offset 3, sizes 3 vs 6",
+                "-00000000  61 62 63                                          |abc|",
+                "+00000000  61 62 63 64 65 66                                 |abcdef|"
+        )));
+    }
+
+    @Test
+    public void missing() throws IOException {
+
+        final BinaryDiff diff = BinaryDiff.compare(
+                "/dev/null", "2/a.bin", null, 0, stream(new byte[] {1}), 1
+        );
+
+        assertThat(diff.getOffset(), equalTo(0L));
+        assertThat(diff.getLines().get(3), equalTo("+00000000  01                                                |.|"));
+    }
+
+    private BinaryDiff compare(final byte[] original, final byte[] revised) throws IOException {
+
+        return BinaryDiff.compare(
+                "1/a.bin", "2/a.bin", stream(original), original.length, stream(revised), revised.length
+        );
+    }
+
+    private InputStream stream(final byte[] content) {
+
+        return new ByteArrayInputStream(content);
+    }
+}
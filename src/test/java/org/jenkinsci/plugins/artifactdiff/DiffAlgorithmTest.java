@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import difflib.Delta;
+import difflib.DiffUtils;
+import difflib.Patch;
+
+public class DiffAlgorithmTest {
+
+    private final DiffAlgorithm[] algorithms = new DiffAlgorithm[] {
+            new DiffAlgorithm.Myers(), new HistogramDiffAlgorithm(), new PatienceDiffAlgorithm()
+    };
+
+    @Test
+    public void patchReconstructsRevised() {
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+
+            final List<String> original = DiffFixtures.lines(random, random.nextInt(80), 12);
+            final List<String> revised = DiffFixtures.mutate(random, original, 8);
+
+            for (final DiffAlgorithm algorithm: algorithms) {
+
+                final Patch patch = algorithm.diff(original, revised);
+                assertThat(algorithm.getName(), apply(original, patch), equalTo(revised));
+            }
+        }
+    }
+
+    @Test
+    public void myersSameAsDiffUtils() {
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+
+            final List<String> original = DiffFixtures.lines(random, random.nextInt(80), 12);
+            final List<String> revised = DiffFixtures.mutate(random, original, 8);
+
+            assertThat(
+                    describe(new DiffAlgorithm.Myers().diff(original, revised)),
+                    equalTo(describe(DiffUtils.diff(original, revised)))
+            );
+        }
+    }
+
+    @Test
+    public void patienceRemovesWholeBlock() {
+
+        final List<String> original = Arrays.asList("{", "a", "}", "{", "b", "}");
+        final List<String> revised = Arrays.asList("{", "b", "}");
+
+        final List<Delta> deltas = new PatienceDiffAlgorithm().diff(original, revised).getDeltas();
+
+        assertThat(deltas.size(), equalTo(1));
+        assertThat(deltas.get(0).getOriginal().getLines(), equalTo((List<?>) Arrays.asList("a", "}", "{")));
+        assertThat(deltas.get(0).getRevised().size(), equalTo(0));
+    }
+
+    @Test
+    public void histogramMatchesRareLines() {
+
+        final List<String> original = Arrays.asList("x", "x", "unique", "x", "x");
+        final List<String> revised = Arrays.asList("unique", "x");
+
+        final Patch patch = new HistogramDiffAlgorithm().diff(original, revised);
+
+        assertThat(apply(original, patch), equalTo(revised));
+        assertThat(patch.getDeltas().get(0).getOriginal().getLines(), equalTo((List<?>) Arrays.asList("x", "x")));
+    }
+
+    @Test
+    public void histogramSurvivesSwappedLines() {
+
+        final List<String> original = new ArrayList<String>();
+        final List<String> revised = new ArrayList<String>();
+        for (int i = 0; i < 100000; i += 2) {
+
+            original.add("line " + (i + 1));
+            original.add("line " + i);
+            revised.add("line " + i);
+            revised.add("line " + (i + 1));
+        }
+
+        final Patch patch = new HistogramDiffAlgorithm().diff(original, revised);
+
+        // Apply front to back, removing from the middle of 100k lines for each delta is too slow
+        final List<Object> result = new ArrayList<Object>();
+        int position = 0;
+        for (final Delta delta: patch.getDeltas()) {
+
+            result.addAll(original.subList(position, delta.getOriginal().getPosition()));
+            result.addAll(delta.getRevised().getLines());
+            position = delta.getOriginal().getPosition() + delta.getOriginal().size();
+        }
+        result.addAll(original.subList(position, original.size()));
+
+        assertThat(result, equalTo((List<?>) revised));
+    }
+
+    @Test
+    public void fallbackForLargeInput() {
+
+        final DiffAlgorithm myers = new DiffAlgorithm.Myers();
+
+        assertThat(myers.forSize(10), sameInstance(myers));
+        assertThat(myers.forSize(DiffAlgorithm.FALLBACK_THRESHOLD + 1), instanceOf(HistogramDiffAlgorithm.class));
+    }
+
+    @Test
+    public void parseRules() {
+
+        final Map<String, String> expected = new LinkedHashMap<String, String>();
+        expected.put("**/*.xml", "histogram");
+        expected.put("sorted.txt", "patience");
+
+        assertThat(
+                DiffAlgorithm.parseRules(" **/*.xml=histogram, sorted.txt = patience,invalid,"),
+                equalTo(expected)
+        );
+    }
+
+    private List<Object> apply(final List<String> original, final Patch patch) {
+
+        final List<Object> result = new ArrayList<Object>(original);
+        final List<Delta> deltas = patch.getDeltas();
+        for (int i = deltas.size() - 1; i >= 0; i--) {
+
+            final Delta delta = deltas.get(i);
+            final int position = delta.getOriginal().getPosition();
+            for (int j = 0; j < delta.getOriginal().size(); j++) {
+
+                assertThat(result.remove(position), equalTo(delta.getOriginal().getLines().get(j)));
+            }
+
+            result.addAll(position, delta.getRevised().getLines());
+        }
+
+        return result;
+    }
+
+    private static List<String> describe(final Patch patch) {
+
+        final List<String> deltas = new ArrayList<String>();
+        for (final Delta delta: patch.getDeltas()) {
+
+            deltas.add(String.format("%s %d%s:%d%s",
+                    delta.getType(),
+                    delta.getOriginal().getPosition(), delta.getOriginal().getLines(),
+                    delta.getRevised().getPosition(), delta.getRevised().getLines()
+            ));
+        }
+
+        return deltas;
+    }
+}
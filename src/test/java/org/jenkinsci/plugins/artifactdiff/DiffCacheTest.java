@@ -0,0 +1,252 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiffCacheTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private DiffCache cache;
+
+    private final String diff = "--- 1/file\n+++ 2/file\n@@ -1,1 +1,1 @@\n-a\n+b";
+
+    @Before
+    public void setUp() {
+
+        cache = new DiffCache(tmp.getRoot(), 1024, 1024 * 1024);
+    }
+
+    @Test
+    public void missAndHit() throws IOException {
+
+        assertThat(lookup(key(1, 2)), nullValue());
+        assertThat(store(key(1, 2), diff), equalTo(diff));
+        assertThat(lookup(key(1, 2)), equalTo(diff));
+
+        assertThat(cache.getHits(), equalTo(1L));
+        assertThat(cache.getMisses(), equalTo(1L));
+        assertThat(cache.toJSON().getLong("hits"), equalTo(1L));
+        assertThat(cache.toJSON().getLong("misses"), equalTo(1L));
+    }
+
+    @Test
+    public void stampIsPartOfTheKey() throws IOException {
+
+        store(key(1, 2), diff);
+
+        assertThat(lookup(new DiffCache.Key("job", 1, 2, "file", "changed")), nullValue());
+    }
+
+    @Test
+    public void uncommittedDiffIsNotCached() throws IOException {
+
+        final DiffCache.Recorder recorder = cache.record(key(1, 2), UnifiedDiff.Type.TEXT, new StringWriter());
+        recorder.write(diff);
+        recorder.close();
+
+        assertThat(lookup(key(1, 2)), nullValue());
+    }
+
+    @Test
+    public void readEvictedEntriesFromDisk() throws IOException {
+
+        for (int i = 0; i < 20; i++) {
+
+            store(key(i, i + 1), diff);
+        }
+
+        // Long evicted from memory
+        assertThat(lookup(key(0, 1)), equalTo(diff));
+    }
+
+    @Test
+    public void largeEntries() throws IOException {
+
+        final String large = new String(new char[2048]).replace('\0', 'x');
+        store(key(1, 2), large);
+
+        assertThat(lookup(key(1, 2)), equalTo(large));
+        assertThat(lookup(key(1, 2)), equalTo(large));
+
+        // Indexed size tells it does not fit into memory
+        assertThat(cache.toJSON().getLong("memoryBytes"), equalTo(0L));
+    }
+
+    @Test
+    public void memoryOnly() throws IOException {
+
+        cache = new DiffCache(tmp.getRoot(), 1024, 0);
+        store(key(1, 2), diff);
+
+        assertThat(lookup(key(1, 2)), equalTo(diff));
+        assertThat(tmp.getRoot().list().length, equalTo(0));
+    }
+
+    @Test
+    public void evictFromDisk() throws IOException {
+
+        cache = new DiffCache(tmp.getRoot(), 0, 400);
+
+        for (int i = 0; i < 20; i++) {
+
+            store(key(i, i + 1), diff);
+        }
+
+        assertThat(lookup(key(0, 1)), nullValue());
+        assertThat(lookup(key(19, 20)), equalTo(diff));
+    }
+
+    @Test
+    public void invalidateDeletedBuild() throws IOException {
+
+        store(key(1, 2), diff);
+        store(key(3, 1), diff);
+        store(key(3, 2), diff);
+        store(new DiffCache.Key("other job", 1, 2, "file", "stamp"), diff);
+
+        cache.invalidate("job", 1);
+
+        assertThat(lookup(key(1, 2)), nullValue());
+        assertThat(lookup(key(3, 1)), nullValue());
+        assertThat(lookup(key(3, 2)), equalTo(diff));
+        assertThat(lookup(new DiffCache.Key("other job", 1, 2, "file", "stamp")), equalTo(diff));
+    }
+
+    @Test
+    public void indexHunks() throws IOException {
+
+        assertThat(cache.getIndex(key(1, 2)), nullValue());
+
+        store(key(1, 2), diff);
+        assertThat(cache.getIndex(key(1, 2)).size(), equalTo(1));
+        assertThat(cache.getIndex(key(1, 2)).getOffset(0), equalTo(22L));
+        assertThat(cache.getIndex(key(1, 2)).getLines(), equalTo(5L));
+        assertThat(cache.getIndex(key(1, 2)).getBytes(), equalTo((long) diff.length()));
+
+        // Index spilled diff again
+        final DiffCache restarted = new DiffCache(tmp.getRoot(), 1024, 1024 * 1024);
+        assertThat(restarted.getIndex(key(1, 2)).getOffset(0), equalTo(22L));
+    }
+
+    @Test
+    public void keepDiffType() throws IOException {
+
+        store(key(1, 2), UnifiedDiff.Type.BINARY, diff);
+        assertThat(cache.getIndex(key(1, 2)).getType(), equalTo(UnifiedDiff.Type.BINARY));
+
+        // Type of spilled diff is stored with it
+        final DiffCache restarted = new DiffCache(tmp.getRoot(), 1024, 1024 * 1024);
+        assertThat(restarted.getIndex(key(1, 2)).getType(), equalTo(UnifiedDiff.Type.BINARY));
+    }
+
+    @Test
+    public void keepAlignmentOfUncachedDiff() throws IOException {
+
+        assertThat(cache.getAlignment(key(1, 2)), nullValue());
+
+        final RowAlignment alignment = RowAlignment.of(new StringReader(diff));
+        cache.putAlignment(key(1, 2), alignment);
+
+        assertThat(lookup(key(1, 2)), nullValue());
+        assertThat(cache.getAlignment(key(1, 2)), sameInstance(alignment));
+
+        cache.invalidate("job", 2);
+        assertThat(cache.getAlignment(key(1, 2)), nullValue());
+    }
+
+    @Test
+    public void transferCompressed() throws IOException {
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(cache.transferCompressed(key(1, 2), Channels.newChannel(out)), equalTo(false));
+
+        store(key(1, 2), diff);
+        assertThat(cache.transferCompressed(key(1, 2), Channels.newChannel(out)), equalTo(true));
+
+        final String transferred = IOUtils.toString(
+                new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())), "UTF-8"
+        );
+        assertThat(transferred, equalTo(diff));
+    }
+
+    private DiffCache.Key key(final int lhs, final int rhs) {
+
+        return new DiffCache.Key("job", lhs, rhs, "file", "stamp");
+    }
+
+    private String store(final DiffCache.Key key, final String body) throws IOException {
+
+        return store(key, UnifiedDiff.Type.TEXT, body);
+    }
+
+    private String store(final DiffCache.Key key, final UnifiedDiff.Type type, final String body) throws IOException {
+
+        final StringWriter out = new StringWriter();
+        final DiffCache.Recorder recorder = cache.record(key, type, out);
+        try {
+
+            recorder.write(body);
+            recorder.commit();
+        } finally {
+
+            recorder.close();
+        }
+
+        return out.toString();
+    }
+
+    private String lookup(final DiffCache.Key key) throws IOException {
+
+        final Reader reader = cache.lookup(key);
+        if (reader == null) return null;
+
+        try {
+
+            return IOUtils.toString(reader);
+        } finally {
+
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class DiffExecutorTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void releaseBlocked() {
+
+        release.countDown();
+    }
+
+    @Test
+    public void computeInPool() throws Exception {
+
+        final DiffExecutor executor = new DiffExecutor(1, 1, 100);
+
+        final String thread = executor.execute(10, new Callable<String>() {
+
+            public String call() {
+
+                return Thread.currentThread().getName();
+            }
+        });
+
+        assertThat(thread.startsWith("Artifact diff computation"), equalTo(true));
+        assertThat(executor.getAdmitted(), equalTo(0L));
+    }
+
+    @Test
+    public void propagateFailure() throws Exception {
+
+        final DiffExecutor executor = new DiffExecutor(1, 1, 100);
+
+        try {
+
+            executor.execute(10, new Callable<String>() {
+
+                public String call() throws IOException {
+
+                    throw new FileNotFoundException("missing");
+                }
+            });
+            fail();
+        } catch (FileNotFoundException ex) {
+
+            assertThat(ex.getMessage(), equalTo("missing"));
+        }
+
+        assertThat(executor.getAdmitted(), equalTo(0L));
+    }
+
+    @Test
+    public void rejectInputOverBudget() throws Exception {
+
+        final DiffExecutor executor = new DiffExecutor(1, 1, 100);
+
+        try {
+
+            executor.execute(101, new Callable<String>() {
+
+                public String call() {
+
+                    return "";
+                }
+            });
+            fail();
+        } catch (Response.Exception.ServiceUnavailable ex) {
+
+            assertThat(ex.getRetryAfter(), equalTo(DiffExecutor.RETRY_AFTER));
+        }
+    }
+
+    @Test
+    public void rejectWhenBudgetSpent() throws Exception {
+
+        final DiffExecutor executor = new DiffExecutor(2, 1, 100);
+        block(executor, 60);
+
+        try {
+
+            executor.execute(60, new Callable<String>() {
+
+                public String call() {
+
+                    return "";
+                }
+            });
+            fail();
+        } catch (Response.Exception.ServiceUnavailable ex) {
+
+            // expected
+        }
+
+        assertThat(executor.getAdmitted(), equalTo(60L));
+    }
+
+    @Test
+    public void rejectWhenQueueFull() throws Exception {
+
+        final DiffExecutor executor = new DiffExecutor(1, 1, 100);
+        block(executor, 10);
+
+        // Occupy the only queue slot
+        new Thread() {
+
+            @Override
+            public void run() {
+
+                try {
+
+                    executor.execute(10, new Callable<String>() {
+
+                        public String call() {
+
+                            return "";
+                        }
+                    });
+                } catch (Exception ex) {
+
+                    // ignore
+                }
+            }
+        }.start();
+
+        while (executor.getQueued() < 1) {
+
+            Thread.sleep(10);
+        }
+
+        try {
+
+            executor.execute(10, new Callable<String>() {
+
+                public String call() {
+
+                    return "";
+                }
+            });
+            fail();
+        } catch (Response.Exception.ServiceUnavailable ex) {
+
+            // expected
+        }
+    }
+
+    @Test
+    public void scheduleHoldsWeightUntilDone() throws Exception {
+
+        final DiffExecutor executor = new DiffExecutor(1, 1, 100);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        assertTrue(executor.schedule(60, new Runnable() {
+
+            public void run() {
+
+                try {
+
+                    release.await();
+                } catch (InterruptedException ex) {
+
+                    // finish
+                }
+                done.countDown();
+            }
+        }));
+
+        assertThat(executor.getAdmitted(), equalTo(60L));
+        assertFalse(executor.schedule(60, new Runnable() {
+
+            public void run() {
+
+                fail();
+            }
+        }));
+
+        release.countDown();
+        done.await();
+        while (executor.getAdmitted() > 0) {
+
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void interruptedCallerLeavesWeightToRunningTask() throws Exception {
+
+        final DiffExecutor executor = new DiffExecutor(1, 1, 100);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        final Thread caller = new Thread() {
+
+            @Override
+            public void run() {
+
+                try {
+
+                    executor.execute(60, new Callable<String>() {
+
+                        public String call() {
+
+                            started.countDown();
+                            // Ignore the cancellation the way a busy computation does
+                            while (release.getCount() > 0) {
+
+                                try {
+
+                                    release.await();
+                                } catch (InterruptedException ex) {
+
+                                    // keep computing
+                                }
+                            }
+                            return "";
+                        }
+                    });
+                } catch (Exception ex) {
+
+                    done.countDown();
+                }
+            }
+        };
+        caller.start();
+        started.await();
+
+        caller.interrupt();
+        done.await();
+        assertThat(executor.getAdmitted(), equalTo(60L));
+
+        release.countDown();
+        while (executor.getAdmitted() > 0) {
+
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void interruptedCallerReleasesQueuedTask() throws Exception {
+
+        final DiffExecutor executor = new DiffExecutor(1, 1, 100);
+        block(executor, 10);
+
+        final Thread caller = new Thread() {
+
+            @Override
+            public void run() {
+
+                try {
+
+                    executor.execute(60, new Callable<String>() {
+
+                        public String call() {
+
+                            fail();
+                            return "";
+                        }
+                    });
+                } catch (Exception ex) {
+
+                    // expected
+                }
+            }
+        };
+        caller.start();
+
+        while (executor.getQueued() < 1) {
+
+            Thread.sleep(10);
+        }
+
+        caller.interrupt();
+        caller.join();
+
+        assertThat(executor.getAdmitted(), equalTo(10L));
+    }
+
+    private void block(final DiffExecutor executor, final long weight) throws InterruptedException {
+
+        new Thread() {
+
+            @Override
+            public void run() {
+
+                try {
+
+                    executor.execute(weight, new Callable<String>() {
+
+                        public String call() throws InterruptedException {
+
+                            started.countDown();
+                            release.await();
+                            return "";
+                        }
+                    });
+                } catch (Exception ex) {
+
+                    // ignore
+                }
+            }
+        }.start();
+
+        started.await();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Inputs shared by tests
+ */
+/*package*/ final class DiffFixtures {
+
+    /**
+     * Header of unified diff between build 1 and 2 of <tt>file</tt>
+     */
+    public static final List<String> HEADER = Arrays.asList("--- 1/file", "+++ 2/file");
+
+    private DiffFixtures() {}
+
+    /**
+     * Random lines out of <tt>distinct</tt> variants
+     */
+    public static List<String> lines(final Random random, final int count, final int distinct) {
+
+        final List<String> lines = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+
+            lines.add("line " + random.nextInt(distinct));
+        }
+
+        return lines;
+    }
+
+    /**
+     * Randomly remove, change or add about two out of <tt>rate</tt> lines
+     */
+    public static List<String> mutate(final Random random, final List<String> original, final int rate) {
+
+        final List<String> revised = new ArrayList<String>();
+        for (final String line: original) {
+
+            switch (random.nextInt(rate)) {
+                case 0: break;
+                case 1: revised.add("changed " + random.nextInt(3)); break;
+                case 2: revised.add(line); revised.add("added"); break;
+                default: revised.add(line);
+            }
+        }
+
+        return revised;
+    }
+
+    /**
+     * Random tokens out of <tt>distinct</tt> variants
+     */
+    public static int[] tokens(final Random random, final int maxLength, final int distinct) {
+
+        final int[] tokens = new int[random.nextInt(maxLength)];
+        for (int i = 0; i < tokens.length; i++) {
+
+            tokens[i] = random.nextInt(distinct);
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Lines separated by newline, no trailing one
+     */
+    public static String join(final List<String> lines) {
+
+        final StringBuilder builder = new StringBuilder();
+        for (final String line: lines) {
+
+            if (builder.length() > 0) builder.append('\n');
+            builder.append(line);
+        }
+
+        return builder.toString();
+    }
+}
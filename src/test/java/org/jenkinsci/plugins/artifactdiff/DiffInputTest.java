@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class DiffInputTest {
+
+    @Test
+    public void internLines() {
+
+        final LineInterner interner = new LineInterner(1);
+        final int[] tokens = interner.intern(Arrays.asList("a", "b", "a", "c", "b", "a"));
+
+        assertThat(tokens, equalTo(new int[] {0, 1, 0, 2, 1, 0}));
+        assertThat(interner.size(), equalTo(3));
+
+        for (int i = 0; i < 1000; i++) {
+
+            assertThat(interner.intern("line " + i), equalTo(i + 3));
+        }
+
+        assertThat(interner.intern("line 42"), equalTo(45));
+    }
+
+    @Test
+    public void stripCommonPrefixAndSuffix() {
+
+        final DiffInput input = DiffInput.of(
+                Arrays.asList("a", "b", "x", "y", "c"),
+                Arrays.asList("a", "b", "y", "x", "c")
+        );
+
+        assertThat(input.getOriginal().length, equalTo(2));
+        assertThat(input.getRevised().length, equalTo(2));
+
+        assertThat(input.expand(new int[] {-1, 0}), equalTo(new int[] {0, 1, -1, 2, 4}));
+    }
+
+    @Test
+    public void pruneLinesMissingOnOtherSide() {
+
+        final DiffInput input = DiffInput.of(
+                Arrays.asList("only original", "shared", "only original", "other"),
+                Arrays.asList("other", "only revised", "shared")
+        );
+
+        assertThat(input.getOriginal().length, equalTo(2));
+        assertThat(input.getRevised().length, equalTo(2));
+        assertThat(input.getOriginal()[0], equalTo(input.getRevised()[1]));
+
+        assertThat(input.expand(new int[] {1, -1}), equalTo(new int[] {-1, 2, -1, -1}));
+    }
+
+    @Test
+    public void internedKeepsAllButPrefix() {
+
+        final DiffInput input = DiffInput.interned(
+                Arrays.asList("a", "only original", "x", "c"),
+                Arrays.asList("a", "x", "x", "c")
+        );
+
+        assertThat(input.getOriginal().length, equalTo(3));
+        assertThat(input.getRevised().length, equalTo(3));
+
+        assertThat(input.expand(new int[] {-1, 0, 2}), equalTo(new int[] {0, -1, 1, 3}));
+    }
+
+    @Test
+    public void identical() {
+
+        final DiffInput input = DiffInput.of(Arrays.asList("a", "b"), Arrays.asList("a", "b"));
+
+        assertThat(input.getOriginal().length, equalTo(0));
+        assertThat(input.expand(new int[0]), equalTo(new int[] {0, 1}));
+    }
+}
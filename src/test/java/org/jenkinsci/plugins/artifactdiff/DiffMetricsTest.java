@@ -0,0 +1,63 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class DiffMetricsTest {
+
+    @Test
+    public void sizeBuckets() {
+
+        assertThat(DiffMetrics.getSizeBucket(-1), equalTo("unknown"));
+        assertThat(DiffMetrics.getSizeBucket(0), equalTo("<1MB"));
+        assertThat(DiffMetrics.getSizeBucket((1 << 20) - 1), equalTo("<1MB"));
+        assertThat(DiffMetrics.getSizeBucket(1 << 20), equalTo("<16MB"));
+        assertThat(DiffMetrics.getSizeBucket(100L << 20), equalTo("<256MB"));
+        assertThat(DiffMetrics.getSizeBucket(1L << 40), equalTo(">=256MB"));
+    }
+
+    @Test
+    public void recordFinishedRequest() {
+
+        final DiffMetrics metrics = DiffMetrics.get();
+        final long before = metrics.getRequests("test/<16MB/miss");
+
+        final DiffMetrics.Request request = DiffMetrics.start("test", "recordFinishedRequest");
+        request.size(2 << 20);
+        DiffMetrics.phase(DiffMetrics.Phase.CACHE);
+        DiffMetrics.cache("miss");
+        DiffMetrics.phase(DiffMetrics.Phase.DIFF);
+        request.finish();
+
+        assertThat(metrics.getRequests("test/<16MB/miss"), equalTo(before + 1));
+
+        // Not measured any longer
+        DiffMetrics.cache("hit");
+        assertThat(metrics.getRequests("test/<16MB/hit"), equalTo(0L));
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.jenkinsci.plugins.artifactdiff.DiffFixtures.HEADER;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class DiffPageTest {
+
+    private static final List<String> HUNKS = Arrays.asList(
+            "@@ -1,1 +1,1 @@", "-a", "+b",
+            "@@ -5,1 +5,1 @@", "-c", "+d",
+            "@@ -9,1 +9,1 @@", "-e", "+f"
+    );
+
+    @Test
+    public void wholeDiff() {
+
+        final DiffPage page = page(0, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+        assertThat(read(page), equalTo(lines(HEADER, HUNKS)));
+        assertFalse(page.isTruncated());
+    }
+
+    @Test
+    public void hunkRange() {
+
+        final DiffPage page = page(1, 2, Long.MAX_VALUE);
+
+        assertThat(read(page), equalTo(lines(HEADER, HUNKS.subList(3, 6))));
+        assertTrue(page.isTruncated());
+        assertThat(page.getNext(), equalTo(2));
+        assertThat(page.getRemaining(), equalTo(1));
+    }
+
+    @Test
+    public void rangeBeyondDiff() {
+
+        final DiffPage page = page(5, 10, Long.MAX_VALUE);
+
+        assertThat(read(page), equalTo(HEADER));
+        assertFalse(page.isTruncated());
+    }
+
+    @Test
+    public void linesWithoutHunks() {
+
+        final List<String> binary = lines(HEADER, Arrays.asList("Binary files differ at offset 0, sizes 1 vs 1"));
+        final DiffPage page = new DiffPage(
+                new ArrayList<String>(), binary.iterator(), 0, 1, 2, 0, Long.MAX_VALUE, Long.MAX_VALUE
+        );
+
+        assertThat(read(page), equalTo(binary));
+        assertFalse(page.isTruncated());
+    }
+
+    @Test
+    public void resendHunkCutShort() {
+
+        final DiffPage page = page(0, Integer.MAX_VALUE, 5);
+
+        assertThat(read(page), equalTo(lines(HEADER, HUNKS.subList(0, 5))));
+        assertThat(page.getNext(), equalTo(1));
+        assertThat(page.getRemaining(), equalTo(2));
+    }
+
+    @Test
+    public void skipHunkLargerThanPage() {
+
+        final DiffPage page = page(1, Integer.MAX_VALUE, 2);
+
+        assertThat(read(page), equalTo(lines(HEADER, HUNKS.subList(3, 5))));
+        assertThat(page.getNext(), equalTo(2));
+    }
+
+    @Test
+    public void truncateFormattedDiffWithoutCounting() {
+
+        final Iterator<String> hunks = HUNKS.iterator();
+        final DiffPage page = new DiffPage(
+                HEADER, new IndexedLines(hunks, UnifiedDiff.Type.TEXT, null), 0, 0, Integer.MAX_VALUE, -1, 2, Long.MAX_VALUE
+        );
+
+        assertThat(read(page), equalTo(lines(HEADER, HUNKS.subList(0, 2))));
+        assertTrue(page.isTruncated());
+        assertFalse(page.isRemainingKnown());
+
+        // Only the hunk the page ended in was read
+        assertThat(hunks.next(), equalTo("-c"));
+
+        assertThat(page.getRemaining(), equalTo(2));
+        assertTrue(page.isRemainingKnown());
+    }
+
+    @Test
+    public void skipLastHunkOfFormattedDiff() {
+
+        final DiffPage page = new DiffPage(
+                HEADER, new IndexedLines(HUNKS.iterator(), UnifiedDiff.Type.TEXT, null), 0, 2, Integer.MAX_VALUE, -1, 2, Long.MAX_VALUE
+        );
+
+        assertThat(read(page), equalTo(lines(HEADER, HUNKS.subList(6, 8))));
+        assertFalse(page.isTruncated());
+        assertTrue(page.isRemainingKnown());
+    }
+
+    @Test
+    public void startFromIndexedHunk() throws IOException {
+
+        final String body = join(lines(HEADER, HUNKS));
+        final HunkIndex index = HunkIndex.of(new StringReader(body));
+
+        assertThat(index.size(), equalTo(3));
+
+        final List<String> rest = Arrays.asList(
+                body.substring((int) index.getOffset(2)).split("\n")
+        );
+        final DiffPage page = new DiffPage(
+                HEADER, rest.iterator(), 2, 2, Integer.MAX_VALUE, 3, Long.MAX_VALUE, Long.MAX_VALUE
+        );
+
+        assertThat(read(page), equalTo(lines(HEADER, HUNKS.subList(6, 9))));
+        assertFalse(page.isTruncated());
+    }
+
+    @Test
+    public void readCachedPage() throws IOException {
+
+        final DiffPage page = readCached(1, 2);
+
+        assertThat(read(page), equalTo(lines(HEADER, HUNKS.subList(3, 6))));
+        assertThat(page.getNext(), equalTo(2));
+    }
+
+    @Test
+    public void readCachedPastLastHunk() throws IOException {
+
+        for (final int to: new int[] {4, Integer.MAX_VALUE}) {
+
+            final DiffPage page = readCached(3, to);
+
+            assertThat(read(page), equalTo(HEADER));
+            assertFalse(page.isTruncated());
+        }
+    }
+
+    @Test
+    public void readCachedWithoutHunks() throws IOException {
+
+        final List<String> binary = lines(HEADER, Arrays.asList("Binary files differ at offset 0, sizes 1 vs 1"));
+        final String body = join(binary);
+        final DiffPage page = DiffResponse.readPage(
+                new StringReader(body), HunkIndex.of(new StringReader(body)), 2, 3, Long.MAX_VALUE, Long.MAX_VALUE
+        );
+
+        assertThat(read(page), equalTo(binary));
+    }
+
+    private DiffPage readCached(final int from, final int to) throws IOException {
+
+        final String body = join(lines(HEADER, HUNKS));
+
+        return DiffResponse.readPage(
+                new StringReader(body), HunkIndex.of(new StringReader(body)), from, to, Long.MAX_VALUE, Long.MAX_VALUE
+        );
+    }
+
+    private DiffPage page(final int from, final int to, final long maxLines) {
+
+        return new DiffPage(
+                HEADER, HUNKS.iterator(), 0, from, to, 3, maxLines, Long.MAX_VALUE
+        );
+    }
+
+    private List<String> read(final Iterator<String> page) {
+
+        final List<String> lines = new ArrayList<String>();
+        while (page.hasNext()) {
+
+            lines.add(page.next());
+        }
+
+        return lines;
+    }
+
+    private List<String> lines(final List<String> header, final List<String> hunks) {
+
+        final List<String> lines = new ArrayList<String>(header);
+        lines.addAll(hunks);
+
+        return lines;
+    }
+
+    private String join(final List<String> lines) {
+
+        final StringBuilder builder = new StringBuilder();
+        for (final String line: lines) {
+
+            builder.append(line).append('\n');
+        }
+
+        return builder.toString();
+    }
+}
@@ -23,7 +23,15 @@
  */
 package org.jenkinsci.plugins.artifactdiff;
 
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
 
@@ -31,6 +39,7 @@ import javax.servlet.ServletException;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.kohsuke.stapler.StaplerResponse;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
@@ -42,11 +51,76 @@ public class DiffResponseTest {
         MockitoAnnotations.initMocks(this);
     }
 
-    @Test(expected = IllegalArgumentException.class)
+    @Test
     public void testInvalidDiffLine() throws IOException, ServletException {
 
-        mock(DiffResponse.Html.class, Mockito.CALLS_REAL_METHODS)
+        final String lineClass = mock(DiffResponse.Html.class, Mockito.CALLS_REAL_METHODS)
             .getLineClass("this is not a diff line")
         ;
+
+        assertThat(lineClass, equalTo("pos"));
+    }
+
+    @Test
+    public void redirectBeforeComputingDiff() throws IOException, ServletException {
+
+        final StaplerResponse rsp = mock(StaplerResponse.class);
+        final DiffResponse response = mock(DiffResponse.Html.class, Mockito.CALLS_REAL_METHODS);
+        doReturn(true).when(response).redirect();
+
+        response.generateResponse(null, rsp, null);
+
+        verify(response, never()).compute();
+    }
+
+    @Test
+    public void notModifiedBeforeComputingDiff() throws IOException, ServletException {
+
+        final StaplerResponse rsp = mock(StaplerResponse.class);
+        final DiffResponse response = mock(DiffResponse.Plain.class, Mockito.CALLS_REAL_METHODS);
+        doReturn(false).when(response).redirect();
+        doReturn(true).when(response).notModified();
+
+        response.generateResponse(null, rsp, null);
+
+        verify(response, never()).compute();
+    }
+
+    @Test
+    public void matchEntityTag() {
+
+        assertTrue(DiffResponse.matches("\"abc\"", "\"abc\""));
+        assertTrue(DiffResponse.matches("\"x\", W/\"abc\"", "\"abc\""));
+        assertTrue(DiffResponse.matches("*", "\"abc\""));
+        assertFalse(DiffResponse.matches("\"abcd\"", "\"abc\""));
+    }
+
+    @Test
+    public void negotiateGzip() {
+
+        assertTrue(DiffResponse.acceptsGzip("gzip, deflate"));
+        assertTrue(DiffResponse.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(DiffResponse.acceptsGzip("x-gzip"));
+        assertFalse(DiffResponse.acceptsGzip(null));
+        assertFalse(DiffResponse.acceptsGzip("deflate, br"));
+        assertFalse(DiffResponse.acceptsGzip("gzip;q=0"));
+        assertFalse(DiffResponse.acceptsGzip("gzip;q=0.000"));
+    }
+
+    @Test
+    public void computeAndRender() throws IOException, ServletException {
+
+        final StaplerResponse rsp = mock(StaplerResponse.class);
+        final DiffPage page = mock(DiffPage.class);
+        final DiffResponse response = mock(DiffResponse.Plain.class, Mockito.CALLS_REAL_METHODS);
+        doReturn(false).when(response).redirect();
+        doReturn(false).when(response).notModified();
+        doReturn(page).when(response).compute();
+        doNothing().when(response).render(page);
+
+        response.generateResponse(null, rsp, null);
+
+        verify(response).render(page);
+        verify(page).close();
     }
 }
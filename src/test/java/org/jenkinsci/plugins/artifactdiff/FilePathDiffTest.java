@@ -26,6 +26,8 @@ package org.jenkinsci.plugins.artifactdiff;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import hudson.FilePath;
 
@@ -38,6 +40,8 @@ import java.util.List;
 import org.hamcrest.collection.IsEmptyCollection;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
@@ -64,7 +68,7 @@ public class FilePathDiffTest {
     }
 
     @Test
-    public void compareNamedAndMissing() throws IOException {
+    public void compareNamedAndMissing() throws Exception {
 
         final List<String> diffLines = new FilePathDiff().getDiff(
                 new FilePathDiff.Entry(getFilePath("asdf"), "asdf.file"),
@@ -76,7 +80,7 @@ public class FilePathDiffTest {
     }
 
     @Test
-    public void compareMissingAndNamed() throws IOException {
+    public void compareMissingAndNamed() throws Exception {
 
         final List<String> diffLines = new FilePathDiff().getDiff(
                 new FilePathDiff.Entry(getFilePath(null), "empty.file"),
@@ -88,7 +92,7 @@ public class FilePathDiffTest {
     }
 
     @Test
-    public void compareNamedAndNamed() throws IOException {
+    public void compareNamedAndNamed() throws Exception {
 
         final List<String> diffLines = new FilePathDiff().getDiff(
                 new FilePathDiff.Entry(getFilePath("asdf"), "asdf.file"),
@@ -100,7 +104,7 @@ public class FilePathDiffTest {
     }
 
     @Test
-    public void compareMissingAndMissing() throws IOException {
+    public void compareMissingAndMissing() throws Exception {
 
         final List<String> diffLines = new FilePathDiff().getDiff(
                 new FilePathDiff.Entry(getFilePath(null), "asdf.file"),
@@ -111,7 +115,7 @@ public class FilePathDiffTest {
     }
 
     @Test
-    public void comparison() throws IOException {
+    public void comparison() throws Exception {
 
         final List<String> diffLines = new FilePathDiff().getDiff(
                 new FilePathDiff.Entry(getFilePath("line one\nline 2\nline III"), "src"),
@@ -133,7 +137,7 @@ public class FilePathDiffTest {
     }
 
     @Test
-    public void useFilePath() throws IOException {
+    public void useFilePath() throws Exception {
 
         final FilePath nullPath = getFilePath("line one");
         final FilePath emptyPath = getFilePath("line 1");
@@ -150,16 +154,53 @@ public class FilePathDiffTest {
         assertThat(diffLines.get(1), equalTo("+++ /remote/empty"));
     }
 
-    private FilePath getFilePath(final String source) throws IOException {
+    @Test
+    public void compareBinaries() throws Exception {
+
+        final List<String> diffLines = new FilePathDiff().getDiff(
+                new FilePathDiff.Entry(getFilePath("line\0one"), "src"),
+                new FilePathDiff.Entry(getFilePath("line\0two"), "dst")
+        );
+
+        assertThat(diffLines.get(0), equalTo("--- src"));
+        assertThat(diffLines.get(1), equalTo("+++ dst"));
+        assertThat(diffLines.get(2), equalTo("Binary files differ at offset 5, sizes 8 vs 8"));
+    }
 
-        final InputStream sourceStream = source == null
-                ? null
-                : new ByteArrayInputStream(source.getBytes())
-        ;
+    @Test
+    public void readContentOnce() throws Exception {
+
+        final FilePath text = getFilePath("line 1\nline 2");
+        final FilePath binary = getFilePath("line\0one");
+
+        final FilePathDiff.Entry textEntry = new FilePathDiff.Entry(text, "text");
+        final FilePathDiff.Entry binaryEntry = new FilePathDiff.Entry(binary, "binary");
+
+        assertThat(textEntry.isMissing(), equalTo(false));
+        assertThat(textEntry.isBinary(), equalTo(false));
+        assertThat(textEntry.getLines(), equalTo(Arrays.asList("line 1", "line 2")));
+        assertThat(binaryEntry.isMissing(), equalTo(false));
+        assertThat(binaryEntry.isBinary(), equalTo(true));
+
+        verify(text, times(1)).read();
+        verify(binary, times(1)).read();
+    }
 
+    private FilePath getFilePath(final String source) throws Exception {
 
         final FilePath filePath = mock(FilePath.class);
-        when(filePath.read()).thenReturn(sourceStream);
+        when(filePath.length()).thenReturn(source == null ? 0L : source.length());
+
+        // Every read opens new stream
+        when(filePath.read()).thenAnswer(new Answer<InputStream>() {
+            public InputStream answer(final InvocationOnMock invocation) {
+
+                return source == null
+                        ? null
+                        : new ByteArrayInputStream(source.getBytes())
+                ;
+            }
+        });
 
         return filePath;
     }
@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class HtmlDiffTest {
+
+    private static final List<String> DIFF = Arrays.asList(
+            "--- 1/file",
+            "+++ 2/file",
+            "@@ -1,2 +1,2 @@",
+            " <tag>",
+            "-old & gone",
+            "+new",
+            "@@ -9,1 +9,0 @@",
+            "-last"
+    );
+
+    @Test
+    public void fragmentPerHunk() {
+
+        final List<String> fragments = render(DIFF, false);
+
+        assertThat(fragments.size(), equalTo(3));
+        assertThat(fragments.get(0), equalTo(
+                "<div class=\"old\">" + GUTTERS + "--- 1/file</div>"
+                + "<div class=\"new\">" + GUTTERS + "+++ 2/file</div>"
+        ));
+        assertThat(fragments.get(1), equalTo(
+                "<div class=\"pos\">" + gutters(1, 1) + "@@ -1,2 +1,2 @@</div>"
+                + "<div class=\"con\">" + gutters(1, 1) + " &lt;tag&gt;</div>"
+                + "<div class=\"old\">" + gutters(2, 0) + "-old &amp; gone</div>"
+                + "<div class=\"new\">" + gutters(0, 2) + "+new</div>"
+        ));
+        assertThat(fragments.get(2), equalTo(
+                "<div class=\"pos\">" + gutters(9, 9) + "@@ -9,1 +9,0 @@</div>"
+                + "<div class=\"old\">" + gutters(9, 0) + "-last</div>"
+        ));
+    }
+
+    @Test
+    public void keepUnknownLines() {
+
+        final List<String> fragments = render(Arrays.asList(
+                "@@ -1,1 +1,1 @@", "-a", "+b", "\\ No newline at end of file"
+        ), true);
+
+        assertThat(fragments.get(0), equalTo(
+                "<pre><span class=\"pos\">@@ -1,1 +1,1 @@</span>\n"
+                + "<span class=\"old\">-a</span>\n"
+                + "<span class=\"new\">+b</span>\n"
+                + "<span class=\"pos\">\\ No newline at end of file</span></pre>"
+        ));
+    }
+
+    @Test
+    public void compact() {
+
+        final List<String> fragments = render(DIFF, true);
+
+        assertThat(fragments.size(), equalTo(3));
+        assertThat(fragments.get(1), equalTo(
+                "<pre><span class=\"pos\">@@ -1,2 +1,2 @@</span>\n"
+                + " &lt;tag&gt;\n"
+                + "<span class=\"old\">-old &amp; gone</span>\n"
+                + "<span class=\"new\">+new</span></pre>"
+        ));
+    }
+
+    @Test
+    public void splitLargeHunk() {
+
+        final List<String> lines = new ArrayList<String>();
+        lines.add("@@ -1,1000 +1,1000 @@");
+        for (int i = 0; i < 1000; i++) {
+
+            lines.add(" context");
+        }
+
+        final List<String> fragments = render(lines, true);
+
+        assertThat(fragments.size(), equalTo(3));
+        assertThat(fragments.get(2), equalTo("<pre> context</pre>"));
+    }
+
+    @Test
+    public void markHunkHeaders() {
+
+        final Iterator<String> diff = new HtmlDiff(DIFF.iterator(), false, null, 4);
+        diff.next();
+
+        assertThat(diff.next(), startsWith(
+                "<div class=\"pos\" data-hunk=\"4\">" + gutters(1, 1) + "@@ -1,2 +1,2 @@</div>"
+        ));
+        assertThat(diff.next(), startsWith("<div class=\"pos\" data-hunk=\"5\">"));
+    }
+
+    @Test
+    public void emptyDiff() {
+
+        assertFalse(new HtmlDiff(Collections.<String>emptyList().iterator(), false, null).hasNext());
+    }
+
+    private static final String GUTTERS = gutters(0, 0);
+
+    private static String gutters(final int oldNumber, final int newNumber) {
+
+        return "<span class=\"ln\">" + (oldNumber > 0 ? oldNumber : "") + "</span>"
+                + "<span class=\"ln\">" + (newNumber > 0 ? newNumber : "") + "</span>"
+        ;
+    }
+
+    private List<String> render(final List<String> lines, final boolean compact) {
+
+        final List<String> fragments = new ArrayList<String>();
+        final Iterator<String> diff = new HtmlDiff(lines.iterator(), compact, null);
+        while (diff.hasNext()) {
+
+            fragments.add(diff.next());
+        }
+
+        return fragments;
+    }
+}
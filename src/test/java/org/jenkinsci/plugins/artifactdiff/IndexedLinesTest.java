@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullWriter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IndexedLinesTest {
+
+    private static final List<String> DIFF = Arrays.asList(
+            "--- 1/file", "+++ 2/file",
+            "@@ -1,1 +1,1 @@", "-a", "+b",
+            "@@ -9,1 +9,1 @@", "-c", "+d"
+    );
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private DiffCache cache;
+    private final DiffCache.Key key = new DiffCache.Key("job", 1, 2, "file", "stamp");
+
+    @Before
+    public void setUp() {
+
+        cache = new DiffCache(tmp.getRoot(), 1024, 1024 * 1024);
+    }
+
+    @Test
+    public void recordWhileReading() throws IOException {
+
+        final IndexedLines lines = new IndexedLines(DIFF.iterator(), UnifiedDiff.Type.TEXT, cache.record(key, UnifiedDiff.Type.TEXT, new NullWriter()));
+        for (final String line: DIFF) {
+
+            assertThat(lines.next(), equalTo(line));
+        }
+
+        assertThat(lines.hasNext(), equalTo(false));
+        assertThat(lines.getIndex().size(), equalTo(2));
+        assertThat(lines.getIndex().getAdded(), equalTo(2L));
+        assertThat(read(), equalTo("--- 1/file\n+++ 2/file\n@@ -1,1 +1,1 @@\n-a\n+b\n@@ -9,1 +9,1 @@\n-c\n+d"));
+    }
+
+    @Test
+    public void indexReadsTheRest() throws IOException {
+
+        final IndexedLines lines = new IndexedLines(DIFF.iterator(), UnifiedDiff.Type.TEXT, cache.record(key, UnifiedDiff.Type.TEXT, new NullWriter()));
+        lines.next();
+
+        assertThat(lines.getIndex().size(), equalTo(2));
+        assertThat(lines.getIndex().getOffset(1), equalTo(44L));
+        assertThat(cache.getIndex(key).size(), equalTo(2));
+    }
+
+    @Test
+    public void discardUnlessReadCompletely() throws IOException {
+
+        final IndexedLines lines = new IndexedLines(DIFF.iterator(), UnifiedDiff.Type.TEXT, cache.record(key, UnifiedDiff.Type.TEXT, new NullWriter()));
+        lines.next();
+        lines.close();
+
+        assertThat(cache.lookup(key), nullValue());
+    }
+
+    @Test
+    public void pageOfUnknownHunkCount() {
+
+        final IndexedLines lines = new IndexedLines(DIFF.iterator(), UnifiedDiff.Type.TEXT, null);
+        final DiffPage page = new DiffPage(
+                Arrays.asList(lines.next(), lines.next()), lines, 0, 0, 1, -1, Long.MAX_VALUE, Long.MAX_VALUE
+        );
+
+        int read = 0;
+        while (page.hasNext()) {
+
+            page.next();
+            read++;
+        }
+
+        assertThat(read, equalTo(5));
+        assertThat(page.getHunks(), equalTo(2));
+        assertThat(page.getRemaining(), equalTo(1));
+    }
+
+    private String read() throws IOException {
+
+        final Reader reader = cache.lookup(key);
+        try {
+
+            return IOUtils.toString(reader);
+        } finally {
+
+            reader.close();
+        }
+    }
+}
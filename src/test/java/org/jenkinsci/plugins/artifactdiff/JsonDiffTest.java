@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.jenkinsci.plugins.artifactdiff.DiffFixtures.HEADER;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class JsonDiffTest {
+
+    /** Lines in need of escaping */
+    private static final List<String> HUNKS = Arrays.asList(
+            "@@ -1,2 +1,2 @@", " \"quoted\"", "-a\tb", "+c",
+            "@@ -9,1 +9,2 @@", " d", "+e"
+    );
+
+    @Test
+    public void hunksWithTypedLines() throws IOException {
+
+        final String json = write(new DiffPage(
+                HEADER, HUNKS.iterator(), 0, 0, Integer.MAX_VALUE, 2, Long.MAX_VALUE, Long.MAX_VALUE
+        ), index(HUNKS));
+
+        assertThat(json, equalTo("{\"lhs\":1,\"rhs\":2,\"path\":\"file\""
+                + ",\"notes\":[]"
+                + ",\"hunks\":["
+                + "{\"oldStart\":1,\"oldCount\":2,\"newStart\":1,\"newCount\":2,\"lines\":["
+                + "{\"type\":\"context\",\"text\":\"\\\"quoted\\\"\",\"old\":1,\"new\":1},"
+                + "{\"type\":\"removed\",\"text\":\"a\\tb\",\"old\":2},"
+                + "{\"type\":\"added\",\"text\":\"c\",\"new\":2}"
+                + "]},"
+                + "{\"oldStart\":9,\"oldCount\":1,\"newStart\":9,\"newCount\":2,\"lines\":["
+                + "{\"type\":\"context\",\"text\":\"d\",\"old\":9,\"new\":9},"
+                + "{\"type\":\"added\",\"text\":\"e\",\"new\":10}"
+                + "]}"
+                + "],\"truncated\":false"
+                + ",\"identical\":false,\"binary\":false,\"archive\":false"
+                + ",\"stats\":{\"hunks\":2,\"added\":2,\"removed\":1}}"
+        ));
+    }
+
+    @Test
+    public void truncated() throws IOException {
+
+        final String json = write(new DiffPage(
+                HEADER, HUNKS.iterator(), 0, 0, 1, 2, Long.MAX_VALUE, Long.MAX_VALUE
+        ), index(HUNKS));
+
+        assertThat(json.contains("]}],\"truncated\":true,\"next\":1,"), equalTo(true));
+    }
+
+    @Test
+    public void binary() throws IOException {
+
+        final List<String> lines = Arrays.asList(
+                "Binary files differ at offset 0, sizes 1 vs 1",
+                "-00000000  61                                                |a|",
+                "+00000000  62                                                |b|"
+        );
+
+        final String json = write(new DiffPage(
+                HEADER, lines.iterator(), 0, 0, Integer.MAX_VALUE, 0, Long.MAX_VALUE, Long.MAX_VALUE
+        ), index(lines, UnifiedDiff.Type.BINARY));
+
+        assertThat(json, equalTo("{\"lhs\":1,\"rhs\":2,\"path\":\"file\""
+                + ",\"notes\":["
+                + "{\"type\":\"note\",\"text\":\"Binary files differ at offset 0, sizes 1 vs 1\"},"
+                + "{\"type\":\"removed\",\"text\":\"00000000  61                                                |a|\"},"
+                + "{\"type\":\"added\",\"text\":\"00000000  62                                                |b|\"}"
+                + "]"
+                + ",\"hunks\":[],\"truncated\":false"
+                + ",\"identical\":false,\"binary\":true,\"archive\":false"
+                + ",\"stats\":{\"hunks\":0,\"added\":0,\"removed\":0}}"
+        ));
+    }
+
+    @Test
+    public void malformedHunkHeader() throws IOException {
+
+        final List<String> hunks = Arrays.asList("@@ -1 +1 @@", " a", "@@ broken", "+b");
+
+        final String json = write(new DiffPage(
+                HEADER, hunks.iterator(), 0, 0, Integer.MAX_VALUE, 2, Long.MAX_VALUE, Long.MAX_VALUE
+        ), index(hunks));
+
+        assertThat(json.contains("\"hunks\":[{\"oldStart\":1,\"oldCount\":1,\"newStart\":1,\"newCount\":1,\"lines\":["
+                + "{\"type\":\"context\",\"text\":\"a\",\"old\":1,\"new\":1},"
+                + "{\"type\":\"hunk\",\"text\":\"@@ broken\"},"
+        ), equalTo(true));
+    }
+
+    @Test
+    public void identical() throws IOException {
+
+        final String json = write(new DiffPage(
+                Collections.<String>emptyList(), Collections.<String>emptyList().iterator(),
+                0, 0, Integer.MAX_VALUE, 0, Long.MAX_VALUE, Long.MAX_VALUE
+        ), null);
+
+        assertThat(json, equalTo("{\"lhs\":1,\"rhs\":2,\"path\":\"file\""
+                + ",\"notes\":[],\"hunks\":[],\"truncated\":false"
+                + ",\"identical\":true,\"binary\":false,\"archive\":false"
+                + ",\"stats\":{\"hunks\":0,\"added\":0,\"removed\":0}}"
+        ));
+    }
+
+    @Test
+    public void quoteControlCharacters() throws IOException {
+
+        final StringWriter out = new StringWriter();
+        JsonDiff.quote(out, "a\\b\r\u0001");
+
+        assertThat(out.toString(), equalTo("\"a\\\\b\\r\\u0001\""));
+    }
+
+    private String write(final DiffPage page, final HunkIndex index) throws IOException {
+
+        final StringWriter out = new StringWriter();
+        new JsonDiff(page, index).write(out, 1, 2, "file");
+
+        return out.toString();
+    }
+
+    private HunkIndex index(final List<String> hunks) throws IOException {
+
+        return index(hunks, UnifiedDiff.Type.TEXT);
+    }
+
+    private HunkIndex index(final List<String> hunks, final UnifiedDiff.Type type) throws IOException {
+
+        final List<String> lines = new ArrayList<String>(HEADER);
+        lines.addAll(hunks);
+
+        return HunkIndex.of(new StringReader(DiffFixtures.join(lines)), type);
+    }
+}
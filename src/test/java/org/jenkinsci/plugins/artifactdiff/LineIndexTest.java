@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LineIndexTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void splitLinesAsBufferedReader() throws IOException {
+
+        for (final String content: Arrays.asList(
+                "", "\n", "a", "a\n", "a\nb", "a\r\nb\r\n", "a\rb\r", "a\n\nb\n\n", "\r\n\r", "\u017elu\u0165ou\u010dk\u00fd\nk\u016f\u0148"
+        )) {
+
+            assertThat(content, map(content).getLines(), equalTo(readLines(content)));
+        }
+    }
+
+    @Test
+    public void compareLines() throws IOException {
+
+        final LineIndex lhs = map("same\ndiffer\nsame");
+        final LineIndex rhs = map("same\r\nDIFFER\nsame\n");
+
+        final List<LineIndex.Line> lhsLines = lhs.getComparable();
+        final List<LineIndex.Line> rhsLines = rhs.getComparable();
+
+        assertThat(lhsLines.get(0), equalTo(rhsLines.get(0)));
+        assertThat(lhsLines.get(0), equalTo(lhsLines.get(2)));
+        assertThat(lhsLines.get(1), not(equalTo(rhsLines.get(1))));
+        assertThat(lhsLines.get(0).hashCode(), equalTo(rhsLines.get(2).hashCode()));
+        assertThat(lhsLines.get(1).toString(), equalTo("differ"));
+    }
+
+    @Test
+    public void diffMappedFiles() throws IOException {
+
+        final FilePathDiff.Entry original = new FilePathDiff.MappedEntry(
+                write("line one\nline 2\nline III"), "src"
+        );
+        final FilePathDiff.Entry revised = new FilePathDiff.MappedEntry(
+                write("line 1\nline 2\nline 3"), "dst"
+        );
+
+        assertThat(new FilePathDiff().getDiff(original, revised), equalTo(Arrays.asList(
+                "--- src",
+                "+++ dst",
+                "@@ -1,3 +1,3 @@",
+                "-line one",
+                "+line 1",
+                " line 2",
+                "-line III",
+                "+line 3"
+        )));
+    }
+
+    @Test
+    public void missingFile() throws IOException {
+
+        final FilePathDiff.Entry missing = new FilePathDiff.MappedEntry(
+                new File(tmp.getRoot(), "missing"), "missing"
+        );
+
+        assertThat(missing.getPath(), equalTo("/dev/null"));
+        assertThat(missing.getLines().size(), equalTo(0));
+    }
+
+    private LineIndex map(final String content) throws IOException {
+
+        return LineIndex.map(write(content), UTF8);
+    }
+
+    private File write(final String content) throws IOException {
+
+        final File file = tmp.newFile();
+        final FileOutputStream stream = new FileOutputStream(file);
+        try {
+
+            stream.write(content.getBytes(UTF8));
+        } finally {
+
+            stream.close();
+        }
+
+        return file;
+    }
+
+    private List<String> readLines(final String content) throws IOException {
+
+        final BufferedReader reader = new BufferedReader(new StringReader(content));
+        final List<String> lines = new ArrayList<String>();
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+
+            lines.add(line);
+        }
+
+        return lines;
+    }
+}
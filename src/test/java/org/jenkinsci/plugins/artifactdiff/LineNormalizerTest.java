@@ -0,0 +1,199 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LineNormalizerTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void ignoreWhitespaceChanges() {
+
+        final LineNormalizer normalizer = normalizer("whitespace");
+
+        assertThat(normalizer.normalize("a  b\t c  "), equalTo("a b c"));
+        assertThat(normalizer.normalize("  indented"), equalTo(" indented"));
+    }
+
+    @Test
+    public void ignoreCase() {
+
+        assertThat(normalizer("case").normalize("Build OK"), equalTo("build ok"));
+    }
+
+    @Test
+    public void stripPatternsFirst() {
+
+        final LineNormalizer normalizer = LineNormalizer.of(
+                Arrays.asList("whitespace"), Arrays.asList("\\d\\d:\\d\\d:\\d\\d")
+        );
+
+        assertThat(normalizer.normalize("[12:30:01]  started "), equalTo("[] started"));
+    }
+
+    @Test
+    public void namedPattern() {
+
+        final String property = LineNormalizer.class.getName() + ".pattern.build";
+        System.setProperty(property, "#\\d+");
+        try {
+
+            assertThat(normalizer("build").normalize("Build #42 done"), equalTo("Build  done"));
+        } finally {
+
+            System.clearProperty(property);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownOption() {
+
+        normalizer("nosuch");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedPattern() {
+
+        LineNormalizer.of(Collections.<String>emptyList(), Arrays.asList("(unclosed"));
+    }
+
+    @Test
+    public void noOptions() {
+
+        assertThat(LineNormalizer.of(Arrays.asList(""), Collections.<String>emptyList()), sameInstance(LineNormalizer.NONE));
+        assertThat(LineNormalizer.forPath("any/file.txt"), sameInstance(LineNormalizer.NONE));
+        assertThat(LineNormalizer.NONE.getVariant(), equalTo(""));
+    }
+
+    @Test
+    public void variantIdentifiesOptions() {
+
+        assertThat(normalizer("whitespace").getVariant(), equalTo(normalizer("whitespace").getVariant()));
+        assertThat(normalizer("whitespace").getVariant(), not(equalTo(normalizer("case").getVariant())));
+        assertThat(
+                LineNormalizer.of(Collections.<String>emptyList(), Arrays.asList("a", "b")).getVariant(),
+                not(equalTo(LineNormalizer.of(Collections.<String>emptyList(), Arrays.asList("a:strip=1/b")).getVariant()))
+        );
+    }
+
+    @Test
+    public void compareNormalizedPrintOriginal() {
+
+        final LineNormalizer normalizer = normalizer("whitespace");
+        final List<LineNormalizer.Line> original = normalizer.getComparable(Arrays.asList("a  b", "c"), null);
+        final List<LineNormalizer.Line> revised = normalizer.getComparable(Arrays.asList("a b ", "d"), null);
+
+        assertTrue(original.get(0).equals(revised.get(0)));
+        assertThat(original.get(0).hashCode(), equalTo(revised.get(0).hashCode()));
+        assertFalse(original.get(1).equals(revised.get(1)));
+        assertThat(original.get(0).toString(), equalTo("a  b"));
+    }
+
+    @Test
+    public void cacheHashesPerArtifact() {
+
+        final LineNormalizer normalizer = normalizer("case");
+        final String stamp = "artifact@" + System.nanoTime();
+        final long cached = LineNormalizer.getCachedHashes();
+
+        normalizer.getComparable(Arrays.asList("A"), stamp);
+        final List<LineNormalizer.Line> lines = normalizer.getComparable(Arrays.asList("A"), stamp);
+
+        assertThat(LineNormalizer.getCachedHashes(), equalTo(Math.min(cached + 1, LineNormalizer.HASHES_LIMIT)));
+        assertTrue(lines.get(0).equals(normalizer.getComparable(Arrays.asList("a"), null).get(0)));
+    }
+
+    @Test
+    public void compareNormalizedFormsOfSameHash() {
+
+        final LineNormalizer normalizer = normalizer("case");
+        final String stamp = "artifact@" + System.nanoTime();
+
+        // Stale hashes of different content under the same stamp collide
+        normalizer.getComparable(Arrays.asList("a"), stamp);
+        final LineNormalizer.Line stale = normalizer.getComparable(Arrays.asList("b"), stamp).get(0);
+        final LineNormalizer.Line line = normalizer.getComparable(Arrays.asList("A"), null).get(0);
+
+        assertThat(stale.hashCode(), equalTo(line.hashCode()));
+        assertFalse(stale.equals(line));
+        assertTrue(line.equals(normalizer.getComparable(Arrays.asList("a"), null).get(0)));
+    }
+
+    @Test
+    public void diffNormalizedFiles() throws IOException {
+
+        final File lhs = write("build 1 at 10:00:00\nsame\nold\n");
+        final File rhs = write("build 2 at 11:30:00  \nSame\nnew\n");
+
+        final LineNormalizer normalizer = LineNormalizer.of(
+                Arrays.asList("whitespace", "case"), Arrays.asList("\\d+(:\\d\\d)*")
+        );
+        final List<String> diff = new FilePathDiff(new DiffAlgorithm.Myers(), normalizer).getDiff(
+                FilePathDiff.MappedEntry.of(lhs, "lhs"), FilePathDiff.MappedEntry.of(rhs, "rhs")
+        );
+
+        assertThat(diff, equalTo(Arrays.asList(
+                "--- lhs", "+++ rhs", "@@ -1,3 +1,3 @@", " build 1 at 10:00:00", " same", "-old", "+new"
+        )));
+    }
+
+    private LineNormalizer normalizer(final String option) {
+
+        return LineNormalizer.of(Arrays.asList(option), Collections.<String>emptyList());
+    }
+
+    private File write(final String content) throws IOException {
+
+        final File file = tmp.newFile();
+        final OutputStream out = new FileOutputStream(file);
+        try {
+
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+
+            out.close();
+        }
+
+        return file;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class LinesReaderTest {
+
+    @Test
+    public void joinLines() throws IOException {
+
+        final List<String> lines = Arrays.asList("--- a", "", "+++ b", "@@ -1 +1 @@");
+
+        assertThat(IOUtils.toString(new LinesReader(lines.iterator())), equalTo("--- a\n\n+++ b\n@@ -1 +1 @@"));
+        assertThat(IOUtils.toString(new LinesReader(Collections.<String>emptyList().iterator())), equalTo(""));
+    }
+
+    @Test
+    public void alignAsCachedText() throws IOException {
+
+        final List<String> lines = Arrays.asList("--- a", "+++ b", "@@ -1,2 +1,2 @@", " same", "-old", "+new");
+        final RowAlignment alignment = RowAlignment.of(new LinesReader(lines.iterator()));
+        final List<RowAlignment.Row> rows = alignment.read(new LinesReader(lines.iterator()), 0, alignment.getRows());
+
+        assertThat(alignment.getRows(), equalTo(RowAlignment.of(new StringReader(DiffFixtures.join(lines))).getRows()));
+        assertThat(rows.get(rows.size() - 1).getRight().getText(), equalTo("new"));
+    }
+}
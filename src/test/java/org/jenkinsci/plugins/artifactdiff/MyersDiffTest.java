@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import difflib.Delta;
+import difflib.DiffUtils;
+
+public class MyersDiffTest {
+
+    @Test
+    public void sameEditsAsDiffUtils() {
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+
+            final int[] a = DiffFixtures.tokens(random, 40, 6);
+            final int[] b = DiffFixtures.tokens(random, 40, 6);
+
+            final List<String> expected = new ArrayList<String>();
+            for (final Delta delta: DiffUtils.diff(asList(a), asList(b)).getDeltas()) {
+
+                expected.add(String.format("%d-%d:%d-%d",
+                        delta.getOriginal().getPosition(),
+                        delta.getOriginal().getPosition() + delta.getOriginal().size(),
+                        delta.getRevised().getPosition(),
+                        delta.getRevised().getPosition() + delta.getRevised().size()
+                ));
+            }
+
+            assertThat(diff(a, b, MyersDiff.TRACE_LIMIT), equalTo(expected));
+        }
+    }
+
+    @Test
+    public void linearSpace() {
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+
+            final int[] a = DiffFixtures.tokens(random, 40, 6);
+            final int[] b = DiffFixtures.tokens(random, 40, 6);
+
+            assertThat(
+                    getEditLength(diff(a, b, 0)),
+                    equalTo(getEditLength(diff(a, b, MyersDiff.TRACE_LIMIT)))
+            );
+            assertThat(apply(a, b, diff(a, b, 0)), equalTo(asList(b)));
+        }
+    }
+
+    @Test
+    public void range() {
+
+        final int[] a = {9, 1, 2, 3, 9};
+        final int[] b = {8, 1, 5, 3, 8};
+
+        final List<String> edits = new ArrayList<String>();
+        MyersDiff.diff(a, 1, 4, b, 1, 4, new Recorder(edits));
+
+        assertThat(edits.toString(), equalTo("[2-3:2-3]"));
+    }
+
+    private List<String> diff(final int[] a, final int[] b, final int traceLimit) {
+
+        final List<String> edits = new ArrayList<String>();
+        MyersDiff.diff(a, 0, a.length, b, 0, b.length, new Recorder(edits), traceLimit);
+
+        return edits;
+    }
+
+    private int getEditLength(final List<String> edits) {
+
+        int length = 0;
+        for (final String edit: edits) {
+
+            final String[] bounds = edit.split("[-:]");
+            length += Integer.parseInt(bounds[1]) - Integer.parseInt(bounds[0]);
+            length += Integer.parseInt(bounds[3]) - Integer.parseInt(bounds[2]);
+        }
+
+        return length;
+    }
+
+    private List<Integer> apply(final int[] a, final int[] b, final List<String> edits) {
+
+        final List<Integer> result = new ArrayList<Integer>();
+        int i = 0;
+        for (final String edit: edits) {
+
+            final String[] bounds = edit.split("[-:]");
+            while (i < Integer.parseInt(bounds[0])) {
+
+                result.add(a[i++]);
+            }
+
+            for (int j = Integer.parseInt(bounds[2]); j < Integer.parseInt(bounds[3]); j++) {
+
+                result.add(b[j]);
+            }
+
+            i = Integer.parseInt(bounds[1]);
+        }
+
+        while (i < a.length) {
+
+            result.add(a[i++]);
+        }
+
+        return result;
+    }
+
+    private List<Integer> asList(final int[] tokens) {
+
+        final List<Integer> list = new ArrayList<Integer>();
+        for (final int token: tokens) {
+
+            list.add(token);
+        }
+
+        return list;
+    }
+
+    private static final class Recorder implements MyersDiff.Callback {
+
+        private final List<String> edits;
+
+        private Recorder(final List<String> edits) {
+
+            this.edits = edits;
+        }
+
+        public void edit(final int originalStart, final int originalEnd, final int revisedStart, final int revisedEnd) {
+
+            edits.add(String.format("%d-%d:%d-%d", originalStart, originalEnd, revisedStart, revisedEnd));
+        }
+    }
+}
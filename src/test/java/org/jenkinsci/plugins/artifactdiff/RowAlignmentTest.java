@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RowAlignmentTest {
+
+    private static final String DIFF = DiffFixtures.join(Arrays.asList(
+            "--- 1/file",
+            "+++ 2/file",
+            "@@ -1,5 +1,4 @@",
+            " a",
+            "-b",
+            "-c",
+            "-d",
+            "+B",
+            " e",
+            "+f",
+            "\\ No newline at end of file"
+    ));
+
+    @Test
+    public void alignRows() throws IOException {
+
+        final RowAlignment alignment = RowAlignment.of(new StringReader(DIFF));
+
+        assertThat(alignment.getRows(), equalTo(8));
+        assertThat(rows(alignment, DIFF, 0, 100), equalTo(Arrays.asList(
+                "@@ -1,5 +1,4 @@",
+                "1 a | 1 a",
+                "2 b | 2 B",
+                "3 c | ",
+                "4 d | ",
+                "5 e | 3 e",
+                " | 4 f",
+                "\\ No newline at end of file"
+        )));
+    }
+
+    @Test
+    public void readSlice() throws IOException {
+
+        final RowAlignment alignment = RowAlignment.of(new StringReader(DIFF));
+
+        assertThat(rows(alignment, DIFF, 3, 3), equalTo(Arrays.asList(
+                "3 c | ", "4 d | ", "5 e | 3 e"
+        )));
+        assertThat(rows(alignment, DIFF, 7, 10), equalTo(Arrays.asList(
+                "\\ No newline at end of file"
+        )));
+        assertThat(rows(alignment, DIFF, 8, 10).size(), equalTo(0));
+    }
+
+    @Test
+    public void readSliceFarIntoLargeChange() throws IOException {
+
+        final List<String> lines = new ArrayList<String>();
+        lines.add("--- 1/file");
+        lines.add("+++ 2/file");
+        lines.add("@@ -1,1000 +1,1000 @@");
+        for (int i = 1; i <= 1000; i++) {
+
+            lines.add("-old " + i);
+        }
+        for (int i = 1; i <= 1000; i++) {
+
+            lines.add("+new " + i);
+        }
+        final String diff = DiffFixtures.join(lines);
+
+        final RowAlignment alignment = RowAlignment.of(new StringReader(diff));
+
+        assertThat(alignment.getRows(), equalTo(1001));
+        assertThat(rows(alignment, diff, 700, 2), equalTo(Arrays.asList(
+                "700 old 700 | 700 new 700", "701 old 701 | 701 new 701"
+        )));
+    }
+
+    @Test
+    public void binaryDiffRows() throws IOException {
+
+        final String diff = DiffFixtures.join(Arrays.asList(
+                "--- 1/file",
+                "+++ 2/file",
+                "Binary files differ at offset 0, sizes 1 vs 1",
+                "-00000000  61                                                |a|",
+                "+00000000  62                                                |b|"
+        ));
+
+        final RowAlignment alignment = RowAlignment.of(new StringReader(diff));
+
+        assertThat(rows(alignment, diff, 0, 10), equalTo(Arrays.asList(
+                "Binary files differ at offset 0, sizes 1 vs 1",
+                "0 00000000  61                                                |a|"
+                + " | 0 00000000  62                                                |b|"
+        )));
+    }
+
+    @Test
+    public void empty() throws IOException {
+
+        assertThat(RowAlignment.EMPTY.getRows(), equalTo(0));
+        assertThat(rows(RowAlignment.EMPTY, "", 0, 10).size(), equalTo(0));
+    }
+
+    @Test
+    public void sliceAsJson() throws IOException {
+
+        final RowAlignment alignment = RowAlignment.of(new StringReader(DIFF));
+        final StringWriter out = new StringWriter();
+
+        DiffResponse.Rows.write(out, alignment.getRows(), 0, alignment.read(new StringReader(DIFF), 0, 3));
+
+        assertThat(out.toString(), equalTo("{\"rows\":8,\"from\":0,\"slice\":["
+                + "{\"both\":{\"type\":\"hunk\",\"text\":\"@@ -1,5 +1,4 @@\"}},"
+                + "{\"both\":{\"type\":\"context\",\"text\":\"a\",\"old\":1,\"new\":1}},"
+                + "{\"left\":{\"type\":\"removed\",\"text\":\"b\",\"old\":2},"
+                + "\"right\":{\"type\":\"added\",\"text\":\"B\",\"new\":2}}"
+                + "]}"
+        ));
+    }
+
+    private List<String> rows(
+            final RowAlignment alignment, final String diff, final int from, final int count
+    ) throws IOException {
+
+        final List<String> rows = new ArrayList<String>();
+        for (final RowAlignment.Row row: alignment.read(new StringReader(diff), from, count)) {
+
+            if (row.getLeft() == row.getRight() && row.getLeft().getType() != DiffLine.Type.CONTEXT) {
+
+                rows.add(row.getLeft().getText());
+            } else {
+
+                rows.add(side(row.getLeft(), true) + " | " + side(row.getRight(), false));
+            }
+        }
+
+        return rows;
+    }
+
+    private String side(final DiffLine line, final boolean old) {
+
+        if (line == null) return "";
+
+        return (old ? line.getOldNumber() : line.getNewNumber()) + " " + line.getText();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+    private final SingleFlight<String, Object> flight = new SingleFlight<String, Object>();
+
+    @Test
+    public void shareConcurrentComputation() throws Exception {
+
+        final AtomicInteger computed = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch ready = new CountDownLatch(4);
+        final Object value = new Object();
+
+        final Object[] results = new Object[4];
+        final Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+
+            final int index = i;
+            threads[i] = new Thread() {
+
+                @Override
+                public void run() {
+
+                    try {
+
+                        ready.countDown();
+                        results[index] = flight.execute("key", new Callable<Object>() {
+
+                            public Object call() throws InterruptedException {
+
+                                computed.incrementAndGet();
+                                release.await();
+                                return value;
+                            }
+                        });
+                    } catch (Exception ex) {
+
+                        results[index] = ex;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        ready.await();
+        // Let the followers join the computation
+        Thread.sleep(100);
+        release.countDown();
+
+        for (int i = 0; i < threads.length; i++) {
+
+            threads[i].join();
+            assertThat(results[i], sameInstance(value));
+        }
+
+        assertThat(computed.get(), equalTo(1));
+        assertFalse(flight.isInFlight("key"));
+    }
+
+    @Test
+    public void computeAgainOnceCompleted() throws Exception {
+
+        final AtomicInteger computed = new AtomicInteger();
+        final Callable<Object> task = new Callable<Object>() {
+
+            public Object call() {
+
+                return computed.incrementAndGet();
+            }
+        };
+
+        assertThat(flight.execute("key", task), equalTo((Object) 1));
+        assertThat(flight.execute("key", task), equalTo((Object) 2));
+    }
+
+    @Test
+    public void propagateFailure() throws Exception {
+
+        try {
+
+            flight.execute("key", new Callable<Object>() {
+
+                public Object call() throws IOException {
+
+                    throw new FileNotFoundException("missing");
+                }
+            });
+            fail();
+        } catch (FileNotFoundException ex) {
+
+            assertThat(ex.getMessage(), equalTo("missing"));
+        }
+
+        assertFalse(flight.isInFlight("key"));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import difflib.DiffUtils;
+import difflib.Patch;
+
+public class UnifiedDiffTest {
+
+    @Test
+    public void sameAsDiffUtils() throws IOException {
+
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 200; i++) {
+
+            final List<String> original = DiffFixtures.lines(random, random.nextInt(60), 10);
+            final List<String> revised = DiffFixtures.mutate(random, original, 12);
+
+            final Patch patch = DiffUtils.diff(original, revised);
+            final List<String> expected = DiffUtils.generateUnifiedDiff("a", "b", original, patch, 4);
+
+            final UnifiedDiff diff = new UnifiedDiff("a", "b", original, patch, 4);
+            assertThat(diff.getLines(), equalTo(expected));
+
+            final StringWriter out = new StringWriter();
+            diff.writeTo(out);
+            assertThat(out.toString(), equalTo(DiffFixtures.join(expected)));
+        }
+    }
+
+    @Test
+    public void hunksReadBackFromText() {
+
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 200; i++) {
+
+            final List<String> original = DiffFixtures.lines(random, random.nextInt(60), 10);
+            final List<String> revised = DiffFixtures.mutate(random, original, 12);
+
+            final UnifiedDiff diff = new UnifiedDiff("a", "b", original, DiffUtils.diff(original, revised), 4);
+
+            final Iterator<DiffLine> parsed = new DiffLines(diff.iterator());
+            if (diff.isEmpty()) {
+
+                assertThat(parsed.hasNext(), equalTo(false));
+                continue;
+            }
+
+            assertThat(parsed.next().getType(), equalTo(DiffLine.Type.OLD_FILE));
+            assertThat(parsed.next().getType(), equalTo(DiffLine.Type.NEW_FILE));
+
+            for (final Hunk hunk: diff.getHunks()) {
+
+                final DiffLine header = parsed.next();
+                assertThat(header.getType(), equalTo(DiffLine.Type.HUNK));
+                assertThat(header.getOldNumber(), equalTo(hunk.getOldStart()));
+                assertThat(header.getNewNumber(), equalTo(hunk.getNewStart()));
+
+                for (final DiffLine line: hunk.getLines()) {
+
+                    final DiffLine read = parsed.next();
+                    assertThat(read.getType(), equalTo(line.getType()));
+                    assertThat(read.getText(), equalTo(line.getText()));
+                    assertThat(read.getOldNumber(), equalTo(line.getOldNumber()));
+                    assertThat(read.getNewNumber(), equalTo(line.getNewNumber()));
+                }
+            }
+
+            assertThat(parsed.hasNext(), equalTo(false));
+        }
+    }
+
+    @Test
+    public void numberHunkLines() {
+
+        final List<String> original = Arrays.asList("a", "b", "c", "d");
+        final List<String> revised = Arrays.asList("a", "x", "c", "d", "e");
+
+        final UnifiedDiff diff = new UnifiedDiff("a", "b", original, DiffUtils.diff(original, revised), 1);
+        final Hunk hunk = diff.getHunks().iterator().next();
+
+        assertThat(hunk.getHeader(), equalTo("@@ -1,4 +1,5 @@"));
+        assertThat(numbers(hunk.getLines()), equalTo(
+                "1:1 a, 2:0 b, 0:2 x, 3:3 c, 4:4 d, 0:5 e"
+        ));
+    }
+
+    private static String numbers(final List<DiffLine> lines) {
+
+        final StringBuilder builder = new StringBuilder();
+        for (final DiffLine line: lines) {
+
+            if (builder.length() > 0) builder.append(", ");
+            builder.append(line.getOldNumber()).append(':').append(line.getNewNumber())
+                    .append(' ').append(line.getText())
+            ;
+        }
+
+        return builder.toString();
+    }
+}
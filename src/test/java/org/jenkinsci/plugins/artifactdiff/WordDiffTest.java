@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.artifactdiff;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class WordDiffTest {
+
+    @Test
+    public void tokenizeWordsSpacesAndPunctuation() {
+
+        assertThat(WordDiff.tokenize("foo_1  bar();"), equalTo(new int[] {0, 5, 7, 10, 11, 12, 13}));
+        assertThat(WordDiff.tokenize(""), equalTo(new int[] {0}));
+    }
+
+    @Test
+    public void changedWord() {
+
+        final WordDiff diff = WordDiff.of("int count = 1;", "int total = 1;");
+
+        assertThat(diff.getOriginal(), equalTo(new int[] {4, 9}));
+        assertThat(diff.getRevised(), equalTo(new int[] {4, 9}));
+    }
+
+    @Test
+    public void insertedWords() {
+
+        final WordDiff diff = WordDiff.of("call(a)", "call(a, b)");
+
+        assertThat(diff.getOriginal(), equalTo(new int[] {}));
+        assertThat(diff.getRevised(), equalTo(new int[] {6, 9}));
+    }
+
+    @Test
+    public void identicalLines() {
+
+        final WordDiff diff = WordDiff.of("same", "same");
+
+        assertThat(diff.getOriginal(), equalTo(new int[] {}));
+        assertThat(diff.getRevised(), equalTo(new int[] {}));
+    }
+
+    @Test
+    public void skipLongLines() {
+
+        final char[] line = new char[WordDiff.MAX_LENGTH + 1];
+        Arrays.fill(line, 'a');
+
+        assertThat(WordDiff.of(new String(line), "a"), nullValue());
+    }
+
+    @Test
+    public void pairChangedLinesOfHunk() throws IOException {
+
+        final StringWriter out = new StringWriter();
+        DiffResponse.Words.write(out, new DiffLines(Arrays.asList(
+                "--- 1/file", "+++ 2/file",
+                "@@ -1,4 +1,3 @@", " keep", "-a b", "-gone", "+a c", " keep", "+added"
+        ).iterator()));
+
+        assertThat(out.toString(), equalTo(
+                "{\"lines\":[{\"old\":2,\"ranges\":[2,3]},{\"new\":2,\"ranges\":[2,3]}]}"
+        ));
+    }
+}